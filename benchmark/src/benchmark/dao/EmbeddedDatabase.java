@@ -0,0 +1,111 @@
+package benchmark.dao;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import db.ConnectionPool;
+import model.dao.impl.DepartmentCache;
+import model.dao.impl.DepartmentDaoJDBC;
+import model.dao.impl.SellerDaoJDBC;
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * In-process H2 database in MySQL mode, created from the application's database.sql
+ * and padded with generated sellers up to the requested size.
+ */
+public class EmbeddedDatabase {
+
+	private static final int BATCH_SIZE = 1000;
+
+	private final String url;
+	private final ConnectionPool pool;
+	private final DepartmentDaoJDBC departmentDao;
+	private final SellerDaoJDBC sellerDao;
+
+	public EmbeddedDatabase(String name, Path schema, int sellers, long seed) {
+		this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+		runScript(schema);
+
+		pool = new ConnectionPool(url, new Properties(), 1, 4, 600000, 30000, 0, 2, 60000, 50, null);
+		departmentDao = new DepartmentDaoJDBC(pool, BATCH_SIZE, new DepartmentCache(1000, Long.MAX_VALUE));
+		sellerDao = new SellerDaoJDBC(pool, BATCH_SIZE, departmentDao);
+
+		seedSellers(sellers, new Random(seed));
+	}
+
+	public SellerDaoJDBC getSellerDao() {
+		return sellerDao;
+	}
+
+	public DepartmentDaoJDBC getDepartmentDao() {
+		return departmentDao;
+	}
+
+	public void close() {
+		pool.close();
+		try (Connection conn = DriverManager.getConnection(url); Statement st = conn.createStatement()) {
+			st.execute("DROP ALL OBJECTS");
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static Seller newSeller(Random random, List<Department> departments, int n) {
+		Seller seller = new Seller();
+		seller.setName("Seller " + n);
+		seller.setEmail("seller" + n + "@example.com");
+		seller.setBirthDate(new Date(random.nextInt(40 * 365) * 86400000L));
+		seller.setBaseSalary(1000 + random.nextInt(9000) + 0.0);
+		seller.setDepartment(departments.get(random.nextInt(departments.size())));
+		return seller;
+	}
+
+	private void runScript(Path schema) {
+		String script;
+		try {
+			script = new String(Files.readAllBytes(schema), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Can't read " + schema, e);
+		}
+		try (Connection conn = DriverManager.getConnection(url); Statement st = conn.createStatement()) {
+			for (String sql : script.split(";")) {
+				// the change_log triggers are MySQL syntax, H2 only takes Java triggers
+				if (!sql.trim().isEmpty() && !sql.trim().startsWith("CREATE TRIGGER")) {
+					st.execute(sql);
+				}
+			}
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException("Can't run " + schema, e);
+		}
+	}
+
+	private void seedSellers(int sellers, Random random) {
+		List<Department> departments = departmentDao.findAll();
+		int existing = sellerDao.count(null);
+
+		List<Seller> batch = new ArrayList<>(BATCH_SIZE);
+		for (int n = existing; n < sellers; n++) {
+			batch.add(newSeller(random, departments, n));
+			if (batch.size() == BATCH_SIZE) {
+				sellerDao.insertAll(batch);
+				batch.clear();
+			}
+		}
+		sellerDao.insertAll(batch);
+	}
+}
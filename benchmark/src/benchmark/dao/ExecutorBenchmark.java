@@ -0,0 +1,99 @@
+package benchmark.dao;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import db.DbExecutor;
+import model.dao.impl.SellerDaoJDBC;
+import model.entities.Seller;
+
+/*
+ * A burst of DAO calls dispatched through DbExecutor in each executor mode, limited to the
+ * embedded database's 4 pooled connections either way. Virtual mode needs a Java 21 runtime;
+ * on older ones it falls back to the fixed pool and both modes measure the same thing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+	private static final int CONNECTIONS = 4;
+
+	@Param({ DbExecutor.PLATFORM, DbExecutor.VIRTUAL })
+	public String mode;
+
+	// calls per burst
+	@Param({ "100", "1000" })
+	public int tasks;
+
+	@Param({ "10000" })
+	public int sellers;
+
+	@Param({ "../database.sql" })
+	public String schema;
+
+	private EmbeddedDatabase database;
+	private SellerDaoJDBC sellerDao;
+	private ExecutorService executor;
+	private Random random;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		database = new EmbeddedDatabase("exec" + sellers, Paths.get(schema), sellers, 42);
+		sellerDao = database.getSellerDao();
+		executor = DbExecutor.newExecutor(mode, CONNECTIONS, "bench-" + mode + "-");
+		random = new Random(7);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+		database.close();
+	}
+
+	@Benchmark
+	public List<Seller> findByIdBurst() throws InterruptedException, ExecutionException {
+		List<Future<Seller>> futures = new ArrayList<>(tasks);
+		for (int i = 0; i < tasks; i++) {
+			int id = 1 + random.nextInt(sellers);
+			futures.add(executor.submit(() -> sellerDao.findById(id)));
+		}
+		List<Seller> result = new ArrayList<>(tasks);
+		for (Future<Seller> future : futures) {
+			result.add(future.get());
+		}
+		return result;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(ExecutorBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
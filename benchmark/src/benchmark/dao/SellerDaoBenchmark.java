@@ -0,0 +1,101 @@
+package benchmark.dao;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import model.dao.impl.SellerDaoJDBC;
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * Throughput of the seller DAO against an embedded database.
+ * Run with -p sellers=1000 (or any size) to pick one table size and with -prof gc
+ * to report allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SellerDaoBenchmark {
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int sellers;
+
+	// relative to the working directory, which is the benchmark project
+	@Param({ "../database.sql" })
+	public String schema;
+
+	private EmbeddedDatabase database;
+	private SellerDaoJDBC sellerDao;
+	private List<Department> departments;
+	private Random random;
+	private int insertCount;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		database = new EmbeddedDatabase("bench" + sellers, Paths.get(schema), sellers, 42);
+		sellerDao = database.getSellerDao();
+		departments = database.getDepartmentDao().findAll();
+		random = new Random(7);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		database.close();
+	}
+
+	@Benchmark
+	public List<Seller> findAll() {
+		return sellerDao.findAll();
+	}
+
+	@Benchmark
+	public List<Seller> findByDepartment() {
+		return sellerDao.findByDepartment(departments.get(random.nextInt(departments.size())));
+	}
+
+	@Benchmark
+	public Seller findById() {
+		return sellerDao.findById(1 + random.nextInt(sellers));
+	}
+
+	@Benchmark
+	public List<Seller> findFirstPage() {
+		return sellerDao.findPage(null, null, null, 100);
+	}
+
+	// rows added here stay in the table, so the size drifts up slightly over a trial
+	@Benchmark
+	public Seller insert() {
+		Seller seller = EmbeddedDatabase.newSeller(random, departments, sellers + insertCount++);
+		sellerDao.insert(seller);
+		return seller;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(SellerDaoBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
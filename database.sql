@@ -1,6 +1,7 @@
 CREATE TABLE department (
   Id int(11) NOT NULL AUTO_INCREMENT,
   Name varchar(60) DEFAULT NULL,
+  Version int(11) NOT NULL DEFAULT 0,
   PRIMARY KEY (Id)
 );
 
@@ -11,10 +12,47 @@ CREATE TABLE seller (
   BirthDate datetime NOT NULL,
   BaseSalary double NOT NULL,
   DepartmentId int(11) NOT NULL,
+  -- bumped by every update, which only applies to the version it was read at
+  Version int(11) NOT NULL DEFAULT 0,
   PRIMARY KEY (Id),
+  KEY idx_seller_name_id (Name, Id),
+  KEY idx_seller_email (Email),
+  KEY idx_seller_department_name (DepartmentId, Name, Id),
+  KEY idx_seller_base_salary (BaseSalary),
+  KEY idx_seller_birth_date (BirthDate),
   FOREIGN KEY (DepartmentId) REFERENCES department (id)
 );
 
+-- one row per insert, update or delete, written by the triggers below;
+-- clients poll it by Id to pick up changes made by other clients
+CREATE TABLE change_log (
+  Id bigint NOT NULL AUTO_INCREMENT,
+  TableName varchar(30) NOT NULL,
+  RowId int(11) NOT NULL,
+  Operation char(1) NOT NULL,
+  ChangedAt timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (Id),
+  KEY idx_change_log_changed_at (ChangedAt)
+);
+
+CREATE TRIGGER department_after_insert AFTER INSERT ON department FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('department', NEW.Id, 'I');
+
+CREATE TRIGGER department_after_update AFTER UPDATE ON department FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('department', NEW.Id, 'U');
+
+CREATE TRIGGER department_after_delete AFTER DELETE ON department FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('department', OLD.Id, 'D');
+
+CREATE TRIGGER seller_after_insert AFTER INSERT ON seller FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('seller', NEW.Id, 'I');
+
+CREATE TRIGGER seller_after_update AFTER UPDATE ON seller FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('seller', NEW.Id, 'U');
+
+CREATE TRIGGER seller_after_delete AFTER DELETE ON seller FOR EACH ROW
+  INSERT INTO change_log (TableName, RowId, Operation) VALUES ('seller', OLD.Id, 'D');
+
 INSERT INTO department (Name) VALUES 
   ('Computers'),
   ('Electronics'),
@@ -2,14 +2,32 @@ package application;
 
 
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import db.DB;
+import db.DbException;
+import db.DbExecutor;
+import gui.listeners.DataChangeEvent;
+import gui.util.Alerts;
+import gui.util.ChangeWatcher;
+import gui.util.StartupMetrics;
+import gui.util.ViewCache;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ScrollPane;
 import javafx.stage.Stage;
+import model.entities.Seller;
+import model.services.DepartmentService;
+import model.services.SellerService;
+import model.services.SellerWriteQueue;
 
 public class Main extends Application {
+	private static final Logger LOG = Logger.getLogger(Main.class.getName());
+
 	private static Scene mainScene;
 	
 	@Override
@@ -22,18 +40,84 @@ public class Main extends Application {
 			scrollPane.setFitToWidth(true);
 			
 			mainScene = new Scene(scrollPane);
+			StartupMetrics.watchFirstFrame(mainScene);
 			primaryStage.setScene(mainScene);
 			primaryStage.setTitle("Sample JavaFX application");
 			primaryStage.show();
+			
+			// nothing below blocks the first frame: the connection pool, the department cache
+			// and the views the menu opens first are made ready in the background
+			DbExecutor.execute(Main::warmUp);
+			ViewCache.preload("/gui/SellerList.fxml", "/gui/DepartmentList.fxml", "/gui/SellerForm.fxml");
+			ChangeWatcher.start();
+			watchWriteBehind();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	@Override
+	public void stop() {
+		ChangeWatcher.stop();
+		ViewCache.shutdown();
+		// before the pool closes, so queued seller saves still reach the database
+		SellerWriteQueue.shutdown();
+		DbExecutor.shutdown();
+		DB.closeConnection();
+	}
+	
 	public static Scene getMainScene() {
 		return mainScene;	
 	}
 
+	// opens the pool's connections and loads the departments every view needs
+	private static void warmUp() {
+		try {
+			new DepartmentService().findAll();
+		}
+		catch (DbException e) {
+			// the first view that needs the database reports it
+			LOG.log(Level.WARNING, "Database warm-up failed: " + e.getMessage());
+		}
+	}
+
+	// sellers saved in the background reach the open lists, the ones that can't be saved are reported
+	private static void watchWriteBehind() {
+		SellerWriteQueue writeQueue = SellerWriteQueue.get();
+		if (writeQueue == null) {
+			return;
+		}
+		writeQueue.addListener(new SellerWriteQueue.Listener() {
+			@Override
+			public void onSaved(Seller seller, boolean inserted) {
+				ChangeWatcher.publishSeller(new DataChangeEvent<>(
+						inserted ? DataChangeEvent.Type.INSERTED : DataChangeEvent.Type.UPDATED, seller, seller.getId()));
+			}
+
+			@Override
+			public void onFailed(Seller seller, String message) {
+				// the form already showed the change to the lists, put back what is stored
+				if (seller.getId() != null) {
+					revert(seller.getId());
+				}
+				Platform.runLater(() -> Alerts.showAlert("Seller not saved", seller.getName(),
+						message + "\nThe seller was written to the failed saves file.", AlertType.ERROR));
+			}
+		});
+	}
+
+	// on the writer thread; a seller deleted meanwhile leaves the lists
+	private static void revert(Integer id) {
+		try {
+			Seller stored = new SellerService().findById(id);
+			ChangeWatcher.publishSeller(stored == null ? new DataChangeEvent<>(DataChangeEvent.Type.DELETED, null, id)
+					: new DataChangeEvent<>(DataChangeEvent.Type.UPDATED, stored, id));
+		}
+		catch (DbException e) {
+			LOG.log(Level.WARNING, "Could not reload seller " + id + ": " + e.getMessage());
+		}
+	}
+
 	public static void main(String[] args) {
 		launch(args);
 	}
@@ -0,0 +1,72 @@
+package db;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Lets at most a fixed number of tasks run at once on an executor that would otherwise start
+ * every task right away, like a thread per task executor. Tasks over the limit wait for a permit
+ * on their own thread, which is cheap when the threads are virtual.
+ */
+public class BoundedExecutor extends AbstractExecutorService {
+
+	private final ExecutorService delegate;
+	private final Semaphore permits;
+
+	public BoundedExecutor(ExecutorService delegate, int maxConcurrent) {
+		this.delegate = delegate;
+		this.permits = new Semaphore(maxConcurrent, true);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		delegate.execute(() -> {
+			try {
+				permits.acquire();
+			}
+			catch (InterruptedException e) {
+				// shut down while waiting; a task from submit is a Future, cancel it so its caller is not left waiting
+				if (task instanceof Future) {
+					((Future<?>) task).cancel(false);
+				}
+				Thread.currentThread().interrupt();
+				return;
+			}
+			try {
+				task.run();
+			}
+			finally {
+				permits.release();
+			}
+		});
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,61 @@
+package db;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * Lets another thread abort the query the current thread is running.
+ * The worker binds a token before calling into the DAOs; DAOs register
+ * the statement they are about to execute, and cancel() calls Statement.cancel()
+ * on it so the server stops working on a result nobody will read.
+ */
+public class CancellationToken {
+
+	private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+	private volatile boolean cancelled;
+	private volatile Statement statement;
+
+	public void bind() {
+		CURRENT.set(this);
+	}
+
+	public void unbind() {
+		CURRENT.remove();
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void cancel() {
+		cancelled = true;
+		Statement st = statement;
+		if (st != null) {
+			try {
+				st.cancel();
+			}
+			catch (SQLException e) {
+				// the statement already finished or its connection is gone
+			}
+		}
+	}
+
+	// called by DAOs right before executing a statement that may be cancelled
+	public static void register(Statement st) {
+		CancellationToken token = CURRENT.get();
+		if (token != null) {
+			token.statement = st;
+			if (token.cancelled) {
+				throw new DbException("Query cancelled");
+			}
+		}
+	}
+
+	public static void unregister() {
+		CancellationToken token = CURRENT.get();
+		if (token != null) {
+			token.statement = null;
+		}
+	}
+}
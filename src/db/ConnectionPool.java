@@ -0,0 +1,425 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ConnectionPool {
+
+	private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+	private final String url;
+	private final Properties connectionProps;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long idleTimeoutMillis;
+	private final long borrowTimeoutMillis;
+	// 0 disables it, which also spares every borrow a stack trace
+	private final long leakDetectionThresholdMillis;
+	private final int validationTimeoutSeconds;
+	// connections used more recently than this are handed out without a validation round trip
+	private final long validationIdleMillis;
+	private final int statementCacheSize;
+	// null when metrics are disabled
+	private final QueryMetrics metrics;
+
+	// idle connections, most recently used first
+	private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	// one permit per connection that may be handed out
+	private final Semaphore permits;
+	private final ScheduledExecutorService housekeeper;
+
+	private volatile boolean closed;
+
+	// the unit of work open on each thread, whose connection getConnection() hands out
+	private final ThreadLocal<UnitOfWork> units = new ThreadLocal<>();
+
+	public ConnectionPool(String url, Properties connectionProps, int minSize, int maxSize, long idleTimeoutMillis,
+			long borrowTimeoutMillis, long leakDetectionThresholdMillis, int validationTimeoutSeconds,
+			long validationIdleMillis,
+			long housekeepingIntervalMillis, int statementCacheSize, QueryMetrics metrics) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+		}
+		this.url = url;
+		this.connectionProps = connectionProps;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		this.validationIdleMillis = validationIdleMillis;
+		this.statementCacheSize = statementCacheSize;
+		this.metrics = metrics;
+		this.permits = new Semaphore(maxSize, true);
+
+		housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "db-pool-housekeeper");
+			t.setDaemon(true);
+			return t;
+		});
+		housekeeper.scheduleWithFixedDelay(this::houseKeep, housekeepingIntervalMillis, housekeepingIntervalMillis,
+				TimeUnit.MILLISECONDS);
+
+		// connecting can take until the driver's timeout, so creating the pool never does it; the first
+		// borrow opens its own connection if the idle ones are not there yet
+		housekeeper.execute(this::fillToMinimum);
+	}
+
+	public Connection getConnection() {
+		UnitOfWork unit = units.get();
+		if (unit != null) {
+			return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Joined(unit));
+		}
+		if (closed) {
+			throw new DbException("Connection pool is closed");
+		}
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new DbException("Timeout waiting for a database connection (max pool size " + maxSize + ")");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting for a database connection");
+		}
+
+		try {
+			PooledConnection pc;
+			while ((pc = idle.pollFirst()) != null) {
+				if (System.currentTimeMillis() - pc.lastUsedAt < validationIdleMillis || isValid(pc)) {
+					return lease(pc);
+				}
+				closePhysical(pc);
+			}
+			return lease(newPooledConnection());
+		}
+		catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	// isolation is one of the Connection.TRANSACTION_* levels, TRANSACTION_NONE keeps the connection's own
+	public UnitOfWork beginUnitOfWork(int isolation) {
+		UnitOfWork current = units.get();
+		if (current != null) {
+			return new UnitOfWork(current);
+		}
+		UnitOfWork unit = new UnitOfWork(this, getConnection(), isolation);
+		units.set(unit);
+		return unit;
+	}
+
+	// null when no unit of work is open on this thread
+	public UnitOfWork currentUnitOfWork() {
+		return units.get();
+	}
+
+	void unbind(UnitOfWork unit) {
+		if (units.get() == unit) {
+			units.remove();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getActiveCount() {
+		return borrowed.size();
+	}
+
+	public long getStatementCacheHits() {
+		long hits = 0;
+		for (PooledConnection pc : connections()) {
+			hits += pc.statements == null ? 0 : pc.statements.getHits();
+		}
+		return hits;
+	}
+
+	public long getStatementCacheMisses() {
+		long misses = 0;
+		for (PooledConnection pc : connections()) {
+			misses += pc.statements == null ? 0 : pc.statements.getMisses();
+		}
+		return misses;
+	}
+
+	private List<PooledConnection> connections() {
+		List<PooledConnection> list = new ArrayList<>(idle);
+		list.addAll(borrowed);
+		return list;
+	}
+
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PooledConnection pc;
+		while ((pc = idle.pollFirst()) != null) {
+			closePhysical(pc);
+		}
+		// borrowed connections are closed as soon as they are returned
+	}
+
+	private Connection lease(PooledConnection pc) {
+		pc.borrowedAt = System.currentTimeMillis();
+		pc.borrowStack = leakDetectionThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+		pc.leakReported = false;
+		borrowed.add(pc);
+		return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new Lease(pc));
+	}
+
+	private void release(PooledConnection pc) {
+		borrowed.remove(pc);
+		try {
+			if (closed || pc.physical.isClosed()) {
+				closePhysical(pc);
+				return;
+			}
+			if (!pc.physical.getAutoCommit()) {
+				pc.physical.rollback();
+				pc.physical.setAutoCommit(true);
+			}
+			pc.lastUsedAt = System.currentTimeMillis();
+			idle.offerFirst(pc);
+		}
+		catch (SQLException e) {
+			closePhysical(pc);
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	private PooledConnection newPooledConnection() {
+		try {
+			PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, connectionProps),
+					statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null);
+			pc.lastUsedAt = System.currentTimeMillis();
+			return pc;
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+	}
+
+	private boolean isValid(PooledConnection pc) {
+		try {
+			return pc.physical.isValid(validationTimeoutSeconds);
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void closePhysical(PooledConnection pc) {
+		if (pc.statements != null) {
+			pc.statements.closeAll();
+		}
+		try {
+			pc.physical.close();
+		}
+		catch (SQLException e) {
+			LOG.log(Level.FINE, "Error closing pooled connection", e);
+		}
+	}
+
+	private void houseKeep() {
+		try {
+			evictIdle();
+			fillToMinimum();
+			detectLeaks();
+		}
+		catch (RuntimeException e) {
+			LOG.log(Level.WARNING, "Connection pool housekeeping failed", e);
+		}
+	}
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+		// the least recently used connections sit at the tail
+		Iterator<PooledConnection> it = idle.descendingIterator();
+		while (it.hasNext()) {
+			PooledConnection pc = it.next();
+			if (idle.size() + borrowed.size() <= minSize) {
+				break;
+			}
+			if (now - pc.lastUsedAt > idleTimeoutMillis && idle.remove(pc)) {
+				closePhysical(pc);
+			}
+		}
+	}
+
+	private void fillToMinimum() {
+		while (!closed && idle.size() + borrowed.size() < minSize && permits.tryAcquire()) {
+			try {
+				idle.offerLast(newPooledConnection());
+			}
+			catch (DbException e) {
+				LOG.log(Level.WARNING, "Could not open idle connection: " + e.getMessage());
+				return;
+			}
+			finally {
+				permits.release();
+			}
+		}
+	}
+
+	private void detectLeaks() {
+		if (leakDetectionThresholdMillis <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (PooledConnection pc : borrowed) {
+			if (!pc.leakReported && now - pc.borrowedAt > leakDetectionThresholdMillis) {
+				pc.leakReported = true;
+				LOG.log(Level.WARNING, "Possible connection leak: connection held for " + (now - pc.borrowedAt)
+						+ " ms", pc.borrowStack);
+			}
+		}
+	}
+
+	private static class PooledConnection {
+		final Connection physical;
+		final StatementCache statements;
+		volatile long lastUsedAt;
+		volatile long borrowedAt;
+		volatile Throwable borrowStack;
+		volatile boolean leakReported;
+
+		PooledConnection(Connection physical, StatementCache statements) {
+			this.physical = physical;
+			this.statements = statements;
+		}
+	}
+
+	// handed out while a unit of work is open: the unit decides when the transaction ends
+	private static class Joined implements InvocationHandler {
+		private final UnitOfWork unit;
+
+		Joined(UnitOfWork unit) {
+			this.unit = unit;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+			case "commit":
+			case "setAutoCommit":
+				return null;
+			case "rollback":
+				if (args == null) {
+					unit.setRollbackOnly();
+					return null;
+				}
+				break;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Joined[" + unit.getConnection() + "]";
+			default:
+				break;
+			}
+			try {
+				return method.invoke(unit.getConnection(), args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	// handed to callers instead of the physical connection, so that close() returns it to the pool
+	private class Lease implements InvocationHandler {
+		private final PooledConnection pc;
+		private boolean returned;
+
+		Lease(PooledConnection pc) {
+			this.pc = pc;
+		}
+
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!returned) {
+					returned = true;
+					release(pc);
+				}
+				return null;
+			case "isClosed":
+				return returned || pc.physical.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Pooled[" + pc.physical + "]";
+			default:
+				if (returned) {
+					throw new SQLException("Connection has already been returned to the pool");
+				}
+				if (method.getName().equals("prepareStatement")) {
+					PreparedStatement st = prepare(method, args);
+					return metrics == null ? st : TracedStatement.wrap(metrics, (String) args[0], st);
+				}
+				return invokePhysical(method, args);
+			}
+		}
+
+		private PreparedStatement prepare(Method method, Object[] args) throws Throwable {
+			if (pc.statements != null) {
+				Class<?>[] types = method.getParameterTypes();
+				if (types.length == 1) {
+					return pc.statements.prepare(pc.physical, (String) args[0], Statement.NO_GENERATED_KEYS);
+				}
+				if (types.length == 2 && types[1] == int.class) {
+					return pc.statements.prepare(pc.physical, (String) args[0], (Integer) args[1]);
+				}
+			}
+			return (PreparedStatement) invokePhysical(method, args);
+		}
+
+		private Object invokePhysical(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(pc.physical, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -3,7 +3,6 @@ package db;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -11,23 +10,58 @@ import java.util.Properties;
 
 public class DB {
 
-	private static Connection conn = null;
+	private static ConnectionPool pool = null;
+	private static QueryMetrics metrics = null;
+	private static int transactionIsolation = Connection.TRANSACTION_NONE;
 	
-	public static Connection getConnection() {
-		if (conn == null) {
-			try {
-				Properties props = loadProperties();
-				String url = props.getProperty("dburl");
-				conn = DriverManager.getConnection(url, props);
-			}
-			catch (SQLException e) {
-				throw new DbException(e.getMessage());
+	public static synchronized ConnectionPool getConnectionPool() {
+		if (pool == null) {
+			Properties props = loadProperties();
+			pool = createPool(props);
+		}
+		return pool;
+	}
+	
+	// pool.transactionIsolation, when set, is the isolation level of every unit of work
+	public static UnitOfWork beginUnitOfWork() {
+		ConnectionPool pool = getConnectionPool();
+		return pool.beginUnitOfWork(transactionIsolation);
+	}
+	
+	public static UnitOfWork beginUnitOfWork(int isolation) {
+		return getConnectionPool().beginUnitOfWork(isolation);
+	}
+	
+	// null when metrics.enabled is false
+	public static synchronized QueryMetrics getQueryMetrics() {
+		if (metrics == null) {
+			Properties props = loadProperties();
+			if (Boolean.parseBoolean(props.getProperty("metrics.enabled", "true"))) {
+				metrics = new QueryMetrics(longProperty(props, "metrics.slowQueryThresholdMillis", 500),
+						longProperty(props, "metrics.logIntervalMillis", 0),
+						Boolean.parseBoolean(props.getProperty("metrics.jmx", "true")));
 			}
 		}
-		return conn;
+		return metrics;
 	}
 	
-	public static void closeConnection() {
+	// borrows a connection from the pool; closing it gives it back
+	public static Connection getConnection() {
+		return getConnectionPool().getConnection();
+	}
+	
+	public static synchronized void closeConnection() {
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+		if (metrics != null) {
+			metrics.close();
+			metrics = null;
+		}
+	}
+	
+	public static void closeConnection(Connection conn) {
 		if (conn != null) {
 			try {
 				conn.close();
@@ -37,7 +71,74 @@ public class DB {
 		}
 	}
 	
-	private static Properties loadProperties() {
+	private static ConnectionPool createPool(Properties props) {
+		String url = props.getProperty("dburl");
+		
+		// pool.* entries configure the pool, metrics.*, dao.*, cache.*, changes.* and memory.* are read elsewhere,
+		// everything else goes to the driver
+		Properties connectionProps = new Properties();
+		for (String key : props.stringPropertyNames()) {
+			if (!key.startsWith("pool.") && !key.startsWith("metrics.") && !key.startsWith("dao.")
+					&& !key.startsWith("cache.") && !key.startsWith("changes.") && !key.startsWith("memory.")) {
+				connectionProps.setProperty(key, props.getProperty(key));
+			}
+		}
+		
+		transactionIsolation = isolationProperty(props, "pool.transactionIsolation");
+		
+		return new ConnectionPool(url, connectionProps,
+				intProperty(props, "pool.minSize", 1),
+				intProperty(props, "pool.maxSize", 10),
+				longProperty(props, "pool.idleTimeoutMillis", 600000),
+				longProperty(props, "pool.borrowTimeoutMillis", 30000),
+				longProperty(props, "pool.leakDetectionThresholdMillis", 0),
+				intProperty(props, "pool.validationTimeoutSeconds", 2),
+				longProperty(props, "pool.validationIdleMillis", 2000),
+				longProperty(props, "pool.housekeepingIntervalMillis", 30000),
+				intProperty(props, "pool.statementCacheSize", 50),
+				getQueryMetrics());
+	}
+	
+	public static int intProperty(Properties props, String key, int defaultValue) {
+		String value = props.getProperty(key);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new DbException("Invalid value for " + key + ": " + value);
+		}
+	}
+	
+	public static long longProperty(Properties props, String key, long defaultValue) {
+		String value = props.getProperty(key);
+		try {
+			return value == null ? defaultValue : Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new DbException("Invalid value for " + key + ": " + value);
+		}
+	}
+	
+	private static int isolationProperty(Properties props, String key) {
+		String value = props.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return Connection.TRANSACTION_NONE;
+		}
+		switch (value.trim().toUpperCase()) {
+		case "READ_UNCOMMITTED":
+			return Connection.TRANSACTION_READ_UNCOMMITTED;
+		case "READ_COMMITTED":
+			return Connection.TRANSACTION_READ_COMMITTED;
+		case "REPEATABLE_READ":
+			return Connection.TRANSACTION_REPEATABLE_READ;
+		case "SERIALIZABLE":
+			return Connection.TRANSACTION_SERIALIZABLE;
+		default:
+			throw new DbException("Invalid value for " + key + ": " + value);
+		}
+	}
+	
+	public static Properties loadProperties() {
 		try (FileInputStream fs = new FileInputStream("db.properties")) {
 			Properties props = new Properties();
 			props.load(fs);
@@ -67,4 +168,14 @@ public class DB {
 			}
 		}
 	}
+
+	public static void rollback(Connection conn) {
+		if (conn != null) {
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				throw new DbException("Error trying to rollback! Caused by: " + e.getMessage());
+			}
+		}
+	}
 }
@@ -0,0 +1,17 @@
+package db;
+
+// an update that found the row changed or deleted since it was read; nothing was written
+public class DbConflictException extends DbException {
+	private static final long serialVersionUID = 1L;
+
+	private final Integer id;
+
+	public DbConflictException(String msg, Integer id) {
+		super(msg);
+		this.id = id;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+}
@@ -0,0 +1,156 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class DbExecutor {
+
+	private static final Logger LOG = Logger.getLogger(DbExecutor.class.getName());
+
+	public static final String PLATFORM = "platform";
+	public static final String VIRTUAL = "virtual";
+
+	private static ExecutorService executor = null;
+	private static ExecutorService loader = null;
+
+	/*
+	 * One worker per pooled connection, so background work never queues on the pool itself.
+	 * dao.executorMode=virtual runs each task on its own virtual thread instead, with a permit
+	 * per pooled connection; it needs Java 21 and falls back to platform threads without it.
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			Properties props = DB.loadProperties();
+			int threads = DB.intProperty(props, "pool.maxSize", 10);
+			executor = newExecutor(props.getProperty("dao.executorMode", PLATFORM), threads, "db-worker-");
+		}
+		return executor;
+	}
+
+	/*
+	 * Runs the parts of a fanned-out query. Kept apart from the workers so a worker waiting on its
+	 * parts can never be the thread they need. dao.parallelism defaults to half the pool, leaving
+	 * connections for the UI and the change poller, and is never more than the pool size.
+	 */
+	public static synchronized ExecutorService getLoaderExecutor() {
+		if (loader == null) {
+			Properties props = DB.loadProperties();
+			int poolSize = DB.intProperty(props, "pool.maxSize", 10);
+			int threads = DB.intProperty(props, "dao.parallelism", poolSize / 2);
+			threads = Math.max(1, Math.min(threads, poolSize));
+			loader = newExecutor(props.getProperty("dao.executorMode", PLATFORM), threads, "db-loader-");
+		}
+		return loader;
+	}
+
+	public static void execute(Runnable task) {
+		getExecutor().execute(task);
+	}
+
+	/*
+	 * Runs the calls in parallel on the loader threads, each on its own pooled connection, and
+	 * returns their results in the order of the calls. The first failure cancels the calls still
+	 * pending and is rethrown. The calls don't take part in a unit of work open on this thread.
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> calls) {
+		List<T> results = new ArrayList<>(calls.size());
+		if (calls.size() == 1) {
+			results.add(call(calls.get(0)));
+			return results;
+		}
+
+		ExecutorService loader = getLoaderExecutor();
+		List<Future<T>> futures = new ArrayList<>(calls.size());
+		try {
+			for (Callable<T> call : calls) {
+				futures.add(loader.submit(call));
+			}
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting for a parallel query");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new DbException(cause.getMessage());
+		}
+		finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if (loader != null) {
+			loader.shutdownNow();
+			loader = null;
+		}
+	}
+
+	// at most maxConcurrent tasks at a time, on a fixed pool of daemon threads or on virtual threads
+	public static ExecutorService newExecutor(String mode, int maxConcurrent, String threadPrefix) {
+		if (VIRTUAL.equalsIgnoreCase(mode.trim())) {
+			ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+			if (virtual != null) {
+				return new BoundedExecutor(virtual, maxConcurrent);
+			}
+			LOG.warning("Virtual threads need Java 21, using platform threads for " + threadPrefix + "*");
+		}
+		else if (!PLATFORM.equalsIgnoreCase(mode.trim())) {
+			throw new DbException("Unknown executor mode: " + mode);
+		}
+		return Executors.newFixedThreadPool(maxConcurrent, daemonThreads(threadPrefix));
+	}
+
+	// looked up at run time so the project still builds and runs on Java 17
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static <T> T call(Callable<T> call) {
+		try {
+			return call.call();
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new DbException(e.getMessage());
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
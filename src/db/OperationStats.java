@@ -0,0 +1,145 @@
+package db;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Latency histogram, row count and error count of one DAO operation.
+ * Total time covers the whole call including mapping the rows, db time only
+ * the statement executions, so the difference is the time spent in Java.
+ * Percentiles are the upper bound of the histogram bucket they fall in.
+ */
+public class OperationStats implements OperationStatsMBean {
+
+	// bucket upper bounds in milliseconds; the last bucket takes everything slower
+	private static final long[] BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+	private final String name;
+	private final LongAdder[] buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder dbNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public OperationStats(String name) {
+		this.name = name;
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	void record(long elapsedNanos, long elapsedDbNanos, long rowCount, boolean failed) {
+		count.increment();
+		totalNanos.add(elapsedNanos);
+		dbNanos.add(elapsedDbNanos);
+		rows.add(rowCount);
+		if (failed) {
+			errors.increment();
+		}
+		maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+		buckets[bucketOf(elapsedNanos / 1000000)].increment();
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getRowCount() {
+		return rows.sum();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+	}
+
+	@Override
+	public double getMeanDbMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : dbNanos.sum() / 1e6 / n;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return maxNanos.get() / 1e6;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return percentile(0.50);
+	}
+
+	@Override
+	public double getP95Millis() {
+		return percentile(0.95);
+	}
+
+	@Override
+	public double getP99Millis() {
+		return percentile(0.99);
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		errors.reset();
+		rows.reset();
+		totalNanos.reset();
+		dbNanos.reset();
+		maxNanos.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: count=%d errors=%d rows=%d mean=%.1fms db=%.1fms p50=%.0fms p95=%.0fms p99=%.0fms max=%.1fms",
+				name, getCount(), getErrorCount(), getRowCount(), getMeanMillis(), getMeanDbMillis(), getP50Millis(),
+				getP95Millis(), getP99Millis(), getMaxMillis());
+	}
+
+	private double percentile(double p) {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(p * total);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return BOUNDS_MILLIS[i];
+			}
+		}
+		return getMaxMillis();
+	}
+
+	private static int bucketOf(long millis) {
+		for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+			if (millis < BOUNDS_MILLIS[i]) {
+				return i;
+			}
+		}
+		return BOUNDS_MILLIS.length;
+	}
+}
@@ -0,0 +1,24 @@
+package db;
+
+public interface OperationStatsMBean {
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getRowCount();
+
+	double getMeanMillis();
+
+	double getMeanDbMillis();
+
+	double getMaxMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	void reset();
+}
@@ -0,0 +1,237 @@
+package db;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Per operation statistics for the DAOs. instrument() wraps a DAO so that every call
+ * is timed, and the pool wraps its statements so that the time spent executing SQL
+ * is added to the operation running on the same thread, and statements slower than
+ * the threshold are logged with their bind parameters.
+ * The statistics are registered as MBeans under javafx_jdbc_01:type=DaoOperation
+ * and, if a log interval is set, written to the log periodically. Caches added with
+ * registerCache() are registered under type=Cache and logged with them.
+ */
+public class QueryMetrics {
+
+	private static final Logger LOG = Logger.getLogger(QueryMetrics.class.getName());
+	private static final String JMX_DOMAIN = "javafx_jdbc_01";
+
+	// statement time of the operation running on this thread
+	private static final ThreadLocal<long[]> DB_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+	private final long slowQueryThresholdMillis;
+	private final boolean jmxEnabled;
+	private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+	private final Map<String, Object> caches = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService reporter;
+
+	public QueryMetrics(long slowQueryThresholdMillis, long logIntervalMillis, boolean jmxEnabled) {
+		this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+		this.jmxEnabled = jmxEnabled;
+
+		if (logIntervalMillis > 0) {
+			reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "db-metrics-reporter");
+				t.setDaemon(true);
+				return t;
+			});
+			reporter.scheduleAtFixedRate(this::logStats, logIntervalMillis, logIntervalMillis, TimeUnit.MILLISECONDS);
+		} else {
+			reporter = null;
+		}
+	}
+
+	// returns a proxy of type that records every call made through it
+	public <T> T instrument(Class<T> type, T target) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new Instrumented(type.getSimpleName(), target)));
+	}
+
+	public List<OperationStats> getOperations() {
+		List<OperationStats> list = new ArrayList<>(operations.values());
+		list.sort((a, b) -> a.getName().compareTo(b.getName()));
+		return list;
+	}
+
+	public long getSlowQueryThresholdMillis() {
+		return slowQueryThresholdMillis;
+	}
+
+	public void logStats() {
+		for (OperationStats stats : getOperations()) {
+			if (stats.getCount() > 0) {
+				LOG.info(stats.toString());
+			}
+		}
+		for (Object cache : caches.values()) {
+			LOG.info(cache.toString());
+		}
+	}
+
+	// cache is a standard MBean; its toString() is what gets logged
+	public void registerCache(String name, Object cache) {
+		caches.put(name, cache);
+		if (jmxEnabled) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = cacheName(name);
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+				server.registerMBean(cache, objectName);
+			}
+			catch (JMException e) {
+				LOG.log(Level.WARNING, "Could not register metrics for cache " + name, e);
+			}
+		}
+	}
+
+	public void close() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+		}
+		if (jmxEnabled) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for (OperationStats stats : operations.values()) {
+				try {
+					server.unregisterMBean(objectName(stats.getName()));
+				}
+				catch (JMException e) {
+					// never registered, nothing to remove
+				}
+			}
+			for (String name : caches.keySet()) {
+				try {
+					server.unregisterMBean(cacheName(name));
+				}
+				catch (JMException e) {
+					// never registered, nothing to remove
+				}
+			}
+		}
+		operations.clear();
+		caches.clear();
+	}
+
+	// called by the pool's statements after every execution
+	void statementExecuted(String sql, List<Object> params, long elapsedNanos) {
+		DB_NANOS.get()[0] += elapsedNanos;
+		long millis = elapsedNanos / 1000000;
+		if (slowQueryThresholdMillis > 0 && millis >= slowQueryThresholdMillis) {
+			LOG.warning("Slow query (" + millis + " ms): " + sql + " " + params);
+		}
+	}
+
+	private OperationStats stats(String name) {
+		return operations.computeIfAbsent(name, key -> {
+			OperationStats stats = new OperationStats(key);
+			if (jmxEnabled) {
+				register(stats);
+			}
+			return stats;
+		});
+	}
+
+	private void register(OperationStats stats) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = objectName(stats.getName());
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(stats, name);
+		}
+		catch (JMException e) {
+			LOG.log(Level.WARNING, "Could not register metrics for " + stats.getName(), e);
+		}
+	}
+
+	private static ObjectName objectName(String operation) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=DaoOperation,name=" + ObjectName.quote(operation));
+	}
+
+	private static ObjectName cacheName(String cache) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=Cache,name=" + ObjectName.quote(cache));
+	}
+
+	// a list counts its elements; a number is the rows streamAll read or a write changed, except that
+	// find and count methods return a value read from one row, like findLatestId and count
+	private static long rowsOf(String method, Object result) {
+		if (result == null) {
+			return 0;
+		}
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if ((result instanceof Long || result instanceof Integer) && !method.startsWith("find")
+				&& !method.startsWith("count")) {
+			return ((Number) result).longValue();
+		}
+		return 1;
+	}
+
+	private class Instrumented implements InvocationHandler {
+		private final String typeName;
+		private final Object target;
+
+		Instrumented(String typeName, Object target) {
+			this.typeName = typeName;
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return "Instrumented[" + target + "]";
+				}
+			}
+
+			OperationStats stats = stats(typeName + "." + method.getName());
+			// nested DAO calls report their own db time and still count towards the caller's
+			long[] dbNanos = DB_NANOS.get();
+			long outerDbNanos = dbNanos[0];
+			dbNanos[0] = 0;
+			long start = System.nanoTime();
+			boolean failed = true;
+			Object result = null;
+			try {
+				result = method.invoke(target, args);
+				failed = false;
+				return result;
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			finally {
+				long elapsed = System.nanoTime() - start;
+				long elapsedDb = dbNanos[0];
+				dbNanos[0] = outerDbNanos + elapsedDb;
+				stats.record(elapsed, elapsedDb, failed ? 0 : rowsOf(method.getName(), result), failed);
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Bounded LRU of prepared statements for one physical connection.
+ * Callers get a proxy whose close() clears parameters and batch, undoes any change to the fetch size,
+ * max rows, query timeout or fetch direction, and puts the statement back in the cache; the statement
+ * is only really closed when it is evicted or the connection goes away.
+ */
+class StatementCache {
+
+	// calls that change a setting, which close() puts back
+	private static final Set<String> SETTERS = new HashSet<>(Arrays.asList("setFetchSize", "setMaxRows",
+			"setLargeMaxRows", "setQueryTimeout", "setFetchDirection"));
+
+	private final int maxSize;
+	// statements that are not checked out, least recently used first
+	private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>();
+
+	private long hits;
+	private long misses;
+
+	StatementCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	synchronized PreparedStatement prepare(Connection physical, String sql, int autoGeneratedKeys)
+			throws SQLException {
+		String key = autoGeneratedKeys + ":" + sql;
+		PreparedStatement st = statements.remove(key);
+		if (st != null && !st.isClosed()) {
+			hits++;
+		} else {
+			misses++;
+			st = physical.prepareStatement(sql, autoGeneratedKeys);
+		}
+		return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new CachedStatement(key, st));
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	synchronized int size() {
+		return statements.size();
+	}
+
+	synchronized void closeAll() {
+		for (PreparedStatement st : statements.values()) {
+			closeQuietly(st);
+		}
+		statements.clear();
+	}
+
+	private synchronized void giveBack(String key, PreparedStatement st, Settings settings) {
+		try {
+			if (st.isClosed()) {
+				return;
+			}
+			st.clearParameters();
+			st.clearBatch();
+			if (settings != null) {
+				settings.restore(st);
+			}
+		}
+		catch (SQLException e) {
+			closeQuietly(st);
+			return;
+		}
+
+		// the same SQL may have been checked out twice; keep only one copy
+		PreparedStatement previous = statements.put(key, st);
+		if (previous != null) {
+			closeQuietly(previous);
+		}
+
+		if (statements.size() > maxSize) {
+			Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+			closeQuietly(it.next().getValue());
+			it.remove();
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement st) {
+		try {
+			st.close();
+		}
+		catch (SQLException e) {
+			// already unusable, nothing left to release
+		}
+	}
+
+	// the settings a caller may change for its own query, as they were before the first change
+	private static class Settings {
+		private final int fetchSize;
+		private final int maxRows;
+		private final int queryTimeout;
+		private final int fetchDirection;
+
+		Settings(PreparedStatement st) throws SQLException {
+			fetchSize = st.getFetchSize();
+			maxRows = st.getMaxRows();
+			queryTimeout = st.getQueryTimeout();
+			fetchDirection = st.getFetchDirection();
+		}
+
+		void restore(PreparedStatement st) throws SQLException {
+			// some drivers reject a fetch size over max rows
+			st.setMaxRows(maxRows);
+			st.setFetchSize(fetchSize);
+			st.setQueryTimeout(queryTimeout);
+			st.setFetchDirection(fetchDirection);
+		}
+	}
+
+	private class CachedStatement implements InvocationHandler {
+		private final String key;
+		private final PreparedStatement st;
+		private boolean returned;
+		// null until the caller changes a setting
+		private Settings settings;
+
+		CachedStatement(String key, PreparedStatement st) {
+			this.key = key;
+			this.st = st;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!returned) {
+					returned = true;
+					giveBack(key, st, settings);
+				}
+				return null;
+			case "isClosed":
+				return returned || st.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Cached[" + st + "]";
+			default:
+				if (returned) {
+					throw new SQLException("Statement has already been closed");
+				}
+				if (settings == null && SETTERS.contains(method.getName())) {
+					settings = new Settings(st);
+				}
+				try {
+					return method.invoke(st, args);
+				}
+				catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Times every execution of a prepared statement for QueryMetrics and keeps the
+ * bind parameters set since the last clearParameters(), so a slow query can be
+ * logged with the values it ran with. A slow batch is logged with its row count,
+ * the parameters only hold its last row.
+ */
+class TracedStatement implements InvocationHandler {
+
+	private final QueryMetrics metrics;
+	private final String sql;
+	private final PreparedStatement st;
+	private final List<Object> params = new ArrayList<>();
+	private int batchRows;
+
+	private TracedStatement(QueryMetrics metrics, String sql, PreparedStatement st) {
+		this.metrics = metrics;
+		this.sql = sql;
+		this.st = st;
+	}
+
+	static PreparedStatement wrap(QueryMetrics metrics, String sql, PreparedStatement st) {
+		return (PreparedStatement) Proxy.newProxyInstance(TracedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new TracedStatement(metrics, sql, st));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		switch (name) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "Traced[" + st + "]";
+		case "clearParameters":
+			params.clear();
+			break;
+		case "addBatch":
+			batchRows++;
+			break;
+		case "clearBatch":
+			batchRows = 0;
+			break;
+		default:
+			if (name.startsWith("set") && args != null && args.length >= 2 && method.getParameterTypes()[0] == int.class) {
+				setParam((Integer) args[0], args[1]);
+			}
+		}
+
+		if (!name.startsWith("execute")) {
+			return call(method, args);
+		}
+		boolean batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+		long start = System.nanoTime();
+		try {
+			return call(method, args);
+		}
+		finally {
+			long elapsed = System.nanoTime() - start;
+			if (batch) {
+				// executing a batch empties it
+				metrics.statementExecuted(sql, Collections.singletonList("batch of " + batchRows + " rows"), elapsed);
+				batchRows = 0;
+			}
+			else {
+				metrics.statementExecuted(sql, params, elapsed);
+			}
+		}
+	}
+
+	private Object call(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(st, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void setParam(int index, Object value) {
+		while (params.size() < index) {
+			params.add(null);
+		}
+		params.set(index - 1, value);
+	}
+}
@@ -0,0 +1,212 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ * One transaction spanning several DAO calls. While it is open, every connection the pool
+ * hands out on this thread is the unit's connection, and the DAOs' own commit, rollback,
+ * setAutoCommit and close calls on it are ignored; only commit() here ends the transaction.
+ * A failing DAO call marks the unit rollback-only.
+ *
+ *	try (UnitOfWork uow = DB.beginUnitOfWork()) {
+ *		...
+ *		uow.commit();
+ *	}
+ *
+ * Units opened while another is open on the same thread join it: their commit() does nothing,
+ * and closing them without committing makes the outer unit roll back.
+ *
+ * A detached unit has no connection, for backends that keep their data in memory: committing
+ * it only marks it committed, and rolling back is done entirely by its rollback actions.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+	private static final ThreadLocal<UnitOfWork> detachedUnits = new ThreadLocal<>();
+
+	private final ConnectionPool pool;
+	private final Connection conn;
+	// null for a top-level unit; the unit this one joined otherwise
+	private final UnitOfWork outer;
+	private final int previousIsolation;
+	private final List<Runnable> rollbackActions = new ArrayList<>();
+	private final List<Runnable> completionActions = new ArrayList<>();
+	private final Map<Object, Object> resources = new HashMap<>();
+
+	private boolean rollbackOnly;
+	private boolean committed;
+	private boolean closed;
+
+	UnitOfWork(ConnectionPool pool, Connection conn, int isolation) {
+		this.pool = pool;
+		this.conn = conn;
+		this.outer = null;
+		try {
+			previousIsolation = conn.getTransactionIsolation();
+			if (isolation != Connection.TRANSACTION_NONE && isolation != previousIsolation) {
+				conn.setTransactionIsolation(isolation);
+			}
+			conn.setAutoCommit(false);
+		}
+		catch (SQLException e) {
+			DB.closeConnection(conn);
+			throw new DbException(e.getMessage());
+		}
+	}
+
+	private UnitOfWork() {
+		this.pool = null;
+		this.conn = null;
+		this.outer = null;
+		this.previousIsolation = Connection.TRANSACTION_NONE;
+	}
+
+	UnitOfWork(UnitOfWork outer) {
+		this.pool = outer.pool;
+		this.conn = outer.conn;
+		this.outer = outer;
+		this.previousIsolation = Connection.TRANSACTION_NONE;
+	}
+
+	// joins the detached unit already open on this thread, if any
+	public static UnitOfWork beginDetached() {
+		UnitOfWork current = detachedUnits.get();
+		if (current != null) {
+			return new UnitOfWork(current);
+		}
+		UnitOfWork unit = new UnitOfWork();
+		detachedUnits.set(unit);
+		return unit;
+	}
+
+	// the detached unit open on this thread, or null
+	public static UnitOfWork currentDetached() {
+		return detachedUnits.get();
+	}
+
+	Connection getConnection() {
+		return conn;
+	}
+
+	// runs if the unit rolls back, e.g. to forget ids handed out for rows that were never committed;
+	// the actions run in the reverse order they were added
+	public void onRollback(Runnable action) {
+		root().rollbackActions.add(action);
+	}
+
+	// runs once the unit has committed or rolled back
+	public void onCompletion(Runnable action) {
+		root().completionActions.add(action);
+	}
+
+	// state that lives as long as the unit, e.g. an identity map; units that joined share the outer unit's
+	@SuppressWarnings("unchecked")
+	public <T> T getResource(Object key, Supplier<T> factory) {
+		return (T) root().resources.computeIfAbsent(key, k -> factory.get());
+	}
+
+	public void setRollbackOnly() {
+		root().rollbackOnly = true;
+	}
+
+	public boolean isRollbackOnly() {
+		return root().rollbackOnly;
+	}
+
+	public void commit() {
+		if (closed) {
+			throw new DbException("Unit of work is already closed");
+		}
+		committed = true;
+		if (outer != null) {
+			return;
+		}
+		if (rollbackOnly) {
+			throw new DbException("Unit of work was marked for rollback");
+		}
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.commit();
+		}
+		catch (SQLException e) {
+			rollbackOnly = true;
+			throw new DbException("Error trying to commit! Caused by: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (outer != null) {
+			if (!committed) {
+				outer.rollbackOnly = true;
+			}
+			return;
+		}
+
+		if (pool == null) {
+			detachedUnits.remove();
+			try {
+				if (!committed || rollbackOnly) {
+					runRollbackActions();
+				}
+			}
+			finally {
+				complete();
+			}
+			return;
+		}
+
+		pool.unbind(this);
+		try {
+			if (!committed || rollbackOnly) {
+				try {
+					DB.rollback(conn);
+				}
+				finally {
+					// caches and handed out ids and versions are undone even if the rollback call failed
+					runRollbackActions();
+				}
+			}
+			conn.setAutoCommit(true);
+			if (previousIsolation != conn.getTransactionIsolation()) {
+				conn.setTransactionIsolation(previousIsolation);
+			}
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeConnection(conn);
+			complete();
+		}
+	}
+
+	// later actions may depend on the state earlier ones changed, so they are undone first
+	private void runRollbackActions() {
+		for (int i = rollbackActions.size() - 1; i >= 0; i--) {
+			rollbackActions.get(i).run();
+		}
+	}
+
+	private void complete() {
+		resources.clear();
+		for (Runnable action : completionActions) {
+			action.run();
+		}
+	}
+
+	private UnitOfWork root() {
+		return outer == null ? this : outer;
+	}
+}
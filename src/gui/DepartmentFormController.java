@@ -8,6 +8,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 
 import db.DbException;
+import gui.listeners.DataChangeEvent;
 import gui.listeners.DataChangeListener;
 import gui.util.Alerts;
 import gui.util.Constraints;
@@ -27,7 +28,7 @@ public class DepartmentFormController implements Initializable {
 
 	private Department entity;
 	private DepartmentService service;
-	private List<DataChangeListener> dataChangeListeners = new ArrayList<>();
+	private List<DataChangeListener<Department>> dataChangeListeners = new ArrayList<>();
 
 	@FXML
 	private Label labelId;
@@ -55,12 +56,16 @@ public class DepartmentFormController implements Initializable {
 		this.service = service;
 	}
 
-	public void subscribeDataChangeListener(DataChangeListener listener) {
+	public void subscribeDataChangeListener(DataChangeListener<Department> listener) {
 		// other objects, as long as they implement the DataChangeListener interface,
 		// can "subscribe" to receive events from my class
 		dataChangeListeners.add(listener);
 	}
 
+	public void clearDataChangeListeners() {
+		dataChangeListeners.clear();
+	}
+
 	@FXML
 	public void onBtSaveAction(ActionEvent event) {
 
@@ -75,8 +80,10 @@ public class DepartmentFormController implements Initializable {
 		}
 		try {
 			entity = getFormData();
+			DataChangeEvent.Type type = entity.getId() == null ? DataChangeEvent.Type.INSERTED
+					: DataChangeEvent.Type.UPDATED;
 			service.saveOrUpdate(entity);
-			notifyDataChangeListeners();
+			notifyDataChangeListeners(new DataChangeEvent<>(type, entity, entity.getId()));
 
 			Utils.currentStage(event).close();
 		} 
@@ -91,10 +98,10 @@ public class DepartmentFormController implements Initializable {
 
 	}
 
-	private void notifyDataChangeListeners() {
+	private void notifyDataChangeListeners(DataChangeEvent<Department> event) {
 		// notify all "subscribers"
-		for (DataChangeListener listener : dataChangeListeners) {
-			listener.onDataChanged();
+		for (DataChangeListener<Department> listener : dataChangeListeners) {
+			listener.onDataChanged(event);
 		}
 	}
 
@@ -106,6 +113,7 @@ public class DepartmentFormController implements Initializable {
 		ValidationException exception = new ValidationException("Validation Error");
 
 		department.setId(Utils.tryParseToInt(textFieldId.getText()));
+		department.setVersion(entity.getVersion());
 
 		if (textFieldName.getText() == null || textFieldName.getText().trim().isEmpty()) {
 			exception.addError("name", "Field can't be empty");
@@ -142,6 +150,8 @@ public class DepartmentFormController implements Initializable {
 
 		textFieldId.setText(String.valueOf(entity.getId()));
 		textFieldName.setText(entity.getName());
+		// the form is reused, drop the message left from the last department shown
+		labelErrorName.setText("");
 	}
 
 	private void setErrorMessages(Map<String, String> errors) {
@@ -2,23 +2,24 @@ package gui;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 import application.Main;
 import db.DbIntegrityException;
+import gui.listeners.DataChangeEvent;
 import gui.listeners.DataChangeListener;
 import gui.util.Alerts;
+import gui.util.ChangeWatcher;
+import gui.util.FormDialog;
+import gui.util.TableLoader;
 import gui.util.Utils;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
@@ -26,13 +27,11 @@ import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.layout.Pane;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 import model.entities.Department;
 import model.services.DepartmentService;
 
-public class DepartmentListController implements Initializable, DataChangeListener {
+public class DepartmentListController implements Initializable, DataChangeListener<Department> {
 
 	private DepartmentService service;
 
@@ -56,6 +55,8 @@ public class DepartmentListController implements Initializable, DataChangeListen
 
 	private ObservableList<Department> departmentsObservableList;
 
+	private TableLoader<Department> tableLoader;
+
 	public void setDepartmentService(DepartmentService service) {
 		this.service = service;
 	}
@@ -76,8 +77,19 @@ public class DepartmentListController implements Initializable, DataChangeListen
 		tableColumnId.setCellValueFactory(new PropertyValueFactory<>("id"));
 		tableColumnName.setCellValueFactory(new PropertyValueFactory<>("name"));
 
-		Stage stage = (Stage) Main.getMainScene().getWindow();
-		tableViewDepartment.prefHeightProperty().bind(stage.heightProperty());
+		// the view may be preloaded off the FX thread, the stage is only touched on it
+		Utils.runOnFxThread(() -> {
+			Stage stage = (Stage) Main.getMainScene().getWindow();
+			tableViewDepartment.prefHeightProperty().bind(stage.heightProperty());
+		});
+
+		tableLoader = new TableLoader<>(tableViewDepartment);
+
+		initEditButtons();
+		initDeleteButtons();
+
+		// changes made by other clients arrive as the same events as the form's
+		ChangeWatcher.subscribeDepartments(this, tableViewDepartment);
 	}
 
 	public void updateTableView() {
@@ -85,43 +97,74 @@ public class DepartmentListController implements Initializable, DataChangeListen
 			throw new IllegalStateException("Service was null!");
 		}
 
-		List<Department> list = service.findAll();
-		departmentsObservableList = FXCollections.observableArrayList(list);
+		tableLoader.load(service::findAll, list -> {
+			departmentsObservableList = FXCollections.observableArrayList(list);
 
-		tableViewDepartment.setItems(departmentsObservableList);
-		initEditButtons();
-		initDeleteButtons();
+			tableViewDepartment.setItems(departmentsObservableList);
+		});
 	}
 
 	private void createDialogForm(Department department, String absoluteName, Stage parentStage) {
 		try {
-			FXMLLoader loader = new FXMLLoader(getClass().getResource(absoluteName));
-			Pane pane = loader.load();
+			// the form is loaded once and bound to each department it edits
+			FormDialog<DepartmentFormController> dialog = FormDialog.of(absoluteName, "Enter Department Data",
+					parentStage, (DepartmentFormController controller) -> controller.setDepartmentService(new DepartmentService()));
 
-			DepartmentFormController controller = loader.getController();
+			DepartmentFormController controller = dialog.getController();
 			controller.setDepartment(department);
-			controller.setDepartmentService(new DepartmentService());
-			// subscribe DataChangeListener events
+			// subscribe DataChangeListener events, replacing the list view that opened it last
+			controller.clearDataChangeListeners();
 			controller.subscribeDataChangeListener(this);
 
 			controller.updateFormData();
 
-			Stage dialogStage = new Stage();
-			dialogStage.setTitle("Enter Department Data");
-			dialogStage.setScene(new Scene(pane));
-			dialogStage.setResizable(false);
-			dialogStage.initOwner(parentStage);
-			dialogStage.initModality(Modality.WINDOW_MODAL);
-			dialogStage.showAndWait();
+			dialog.showAndWait();
 		} catch (IOException e) {
 			Alerts.showAlert("IOException", "Error loading view", e.getMessage(), AlertType.ERROR);
 		}
 	}
 
 	@Override
-	public void onDataChanged() {
-		// we need to update TableView
-		updateTableView();
+	public void onDataChanged(DataChangeEvent<Department> event) {
+		if (departmentsObservableList == null) {
+			updateTableView();
+			return;
+		}
+		Department department = event.getEntity();
+		switch (event.getType()) {
+		case INSERTED:
+			// this client's own inserts come back from the change watcher too
+			if (departmentsObservableList.contains(department)) {
+				departmentsObservableList.set(departmentsObservableList.indexOf(department), department);
+				break;
+			}
+			// keep the name order findAll() returns
+			int index = 0;
+			while (index < departmentsObservableList.size()
+					&& compareNames(departmentsObservableList.get(index), department) <= 0) {
+				index++;
+			}
+			departmentsObservableList.add(index, department);
+			break;
+		case UPDATED:
+			int position = departmentsObservableList.indexOf(department);
+			if (position >= 0) {
+				departmentsObservableList.set(position, department);
+			}
+			break;
+		case DELETED:
+			// deletes seen by the change watcher carry only the id
+			departmentsObservableList.removeIf(dep -> dep.getId().equals(event.getId()));
+			break;
+		}
+	}
+
+	// Name may be null, MySQL sorts nulls first
+	private int compareNames(Department a, Department b) {
+		if (a.getName() == null || b.getName() == null) {
+			return a.getName() == null ? (b.getName() == null ? 0 : -1) : 1;
+		}
+		return a.getName().compareTo(b.getName());
 	}
 
 	private void initEditButtons() {
@@ -176,7 +219,7 @@ public class DepartmentListController implements Initializable, DataChangeListen
 			}
 			try {
 				service.remove(obj);
-				updateTableView();
+				onDataChanged(new DataChangeEvent<>(DataChangeEvent.Type.DELETED, obj, obj.getId()));
 			}
 			catch(DbIntegrityException e) {
 				Alerts.showAlert("Error removing object", null, e.getMessage(), AlertType.ERROR);
@@ -7,6 +7,7 @@ import java.util.function.Consumer;
 
 import application.Main;
 import gui.util.Alerts;
+import gui.util.ViewCache;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
@@ -17,6 +18,7 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.VBox;
 import model.services.DepartmentService;
+import model.services.ReportService;
 import model.services.SellerService;
 
 public class MainViewController implements Initializable {
@@ -26,6 +28,8 @@ public class MainViewController implements Initializable {
 	@FXML
 	private MenuItem menuItemDepartment;
 	@FXML
+	private MenuItem menuItemPayroll;
+	@FXML
 	private MenuItem menuItemAbout;
 
 	@FXML
@@ -46,6 +50,15 @@ public class MainViewController implements Initializable {
 		});
 	}
 
+	@FXML
+	public void onMenuItemPayrollAction() {
+		loadView("/gui/PayrollReport.fxml", (PayrollReportController controller) ->
+		{
+			controller.setReportService(new ReportService());
+			controller.updateReport();
+		});
+	}
+
 	@FXML
 	public void onMenuItemAboutAction() {
 		loadView("/gui/AboutView.fxml", x -> {});
@@ -58,9 +71,9 @@ public class MainViewController implements Initializable {
 
 	//synchronized ensures that this code execution will not be interrupted during multi thread processing 
 	private synchronized <T> void loadView(String absoluteName, Consumer <T> initializingAction) {
-		FXMLLoader loader = new FXMLLoader(getClass().getResource(absoluteName));
 		try {
-			VBox newVBox = loader.load();
+			FXMLLoader loader = ViewCache.take(absoluteName);
+			VBox newVBox = loader.getRoot();
 			Scene mainScene = Main.getMainScene();
 			
 			VBox mainVBox = (VBox)((ScrollPane)mainScene.getRoot()).getContent();
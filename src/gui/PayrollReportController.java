@@ -0,0 +1,145 @@
+package gui;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import db.DbExecutor;
+import gui.util.Alerts;
+import gui.util.ChangeWatcher;
+import gui.util.Formats;
+import gui.util.TableLoader;
+import gui.util.Utils;
+import javafx.animation.PauseTransition;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Duration;
+import model.entities.AgeBand;
+import model.entities.DepartmentPayroll;
+import model.services.ReportService;
+
+public class PayrollReportController implements Initializable {
+
+	private static final int AGE_BAND_YEARS = 10;
+	private static final Locale LOCALE = new Locale("PT", "pt");
+	// a burst of changes from other clients refreshes the report once
+	private static final Duration RELOAD_DELAY = Duration.millis(500);
+
+	private ReportService service;
+
+	@FXML
+	private TableView<DepartmentPayroll> tableViewPayroll;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, String> tableColumnDepartment;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, Integer> tableColumnSellers;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, Double> tableColumnTotal;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, Double> tableColumnAverage;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, Double> tableColumnMin;
+
+	@FXML
+	private TableColumn<DepartmentPayroll, Double> tableColumnMax;
+
+	@FXML
+	private BarChart<String, Number> chartAgeBands;
+
+	@FXML
+	private Button btRefresh;
+
+	@FXML
+	private Label labelTotals;
+
+	private TableLoader<DepartmentPayroll> tableLoader;
+
+	private PauseTransition reloadDelay;
+
+	public void setReportService(ReportService service) {
+		this.service = service;
+	}
+
+	@FXML
+	public void onBtRefreshAction(ActionEvent event) {
+		ReportService.invalidate();
+		updateReport();
+	}
+
+	@Override
+	public void initialize(URL uri, ResourceBundle rb) {
+		tableColumnDepartment.setCellValueFactory(new PropertyValueFactory<>("departmentName"));
+		tableColumnSellers.setCellValueFactory(new PropertyValueFactory<>("sellerCount"));
+		tableColumnTotal.setCellValueFactory(new PropertyValueFactory<>("totalSalary"));
+		tableColumnAverage.setCellValueFactory(new PropertyValueFactory<>("averageSalary"));
+		tableColumnMin.setCellValueFactory(new PropertyValueFactory<>("minSalary"));
+		tableColumnMax.setCellValueFactory(new PropertyValueFactory<>("maxSalary"));
+		Utils.formatTableColumnDouble(tableColumnTotal, LOCALE);
+		Utils.formatTableColumnDouble(tableColumnAverage, LOCALE);
+		Utils.formatTableColumnDouble(tableColumnMin, LOCALE);
+		Utils.formatTableColumnDouble(tableColumnMax, LOCALE);
+
+		tableLoader = new TableLoader<>(tableViewPayroll);
+
+		// the change service has already dropped the cached figures when these arrive
+		reloadDelay = new PauseTransition(RELOAD_DELAY);
+		reloadDelay.setOnFinished(e -> updateReport());
+		ChangeWatcher.subscribeSellers(event -> reloadDelay.playFromStart(), tableViewPayroll);
+		ChangeWatcher.subscribeDepartments(event -> reloadDelay.playFromStart(), tableViewPayroll);
+	}
+
+	public void updateReport() {
+		if (service == null) {
+			throw new IllegalStateException("Service was null!");
+		}
+
+		tableLoader.load(service::findPayrollByDepartment, list -> {
+			tableViewPayroll.setItems(FXCollections.observableArrayList(list));
+
+			int sellers = 0;
+			double total = 0;
+			for (DepartmentPayroll payroll : list) {
+				sellers += payroll.getSellerCount();
+				total += payroll.getTotalSalary();
+			}
+			labelTotals.setText(sellers + " sellers, total payroll "
+					+ Formats.formatCurrency(total, LOCALE));
+		});
+
+		ReportService ageService = service;
+		Task<List<AgeBand>> ageTask = new Task<List<AgeBand>>() {
+			@Override
+			protected List<AgeBand> call() {
+				return ageService.findAgeBands(AGE_BAND_YEARS);
+			}
+		};
+		ageTask.setOnSucceeded(e -> {
+			XYChart.Series<String, Number> series = new XYChart.Series<>();
+			for (AgeBand band : ageTask.getValue()) {
+				series.getData().add(new XYChart.Data<>(band.getLabel(), band.getSellerCount()));
+			}
+			chartAgeBands.getData().clear();
+			chartAgeBands.getData().add(series);
+		});
+		ageTask.setOnFailed(e -> Alerts.showAlert("Error loading age bands", null,
+				ageTask.getException().getMessage(), AlertType.ERROR));
+		DbExecutor.execute(ageTask);
+	}
+}
@@ -5,16 +5,22 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.Set;
 
+import db.DbConflictException;
 import db.DbException;
+import gui.listeners.DataChangeEvent;
 import gui.listeners.DataChangeListener;
 import gui.util.Alerts;
+import gui.util.ChangeWatcher;
 import gui.util.Constraints;
 import gui.util.Utils;
 import javafx.collections.FXCollections;
@@ -22,26 +28,33 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
+import javafx.stage.Stage;
 import javafx.util.Callback;
 import model.entities.Department;
 import model.entities.Seller;
 import model.exceptions.ValidationException;
 import model.services.DepartmentService;
 import model.services.SellerService;
+import model.services.SellerValidator;
+import model.services.SellerWriteQueue;
 
 public class SellerFormController implements Initializable {
+	// the seller as it was when the form was opened; the base of a merge after a conflict
 	private Seller entity;
+	private Locale locale;
 	private SellerService service;
 	private DepartmentService dpService;
-	private List<DataChangeListener> dataChangeListeners = new ArrayList<>();
+	private List<DataChangeListener<Seller>> dataChangeListeners = new ArrayList<>();
 
 	@FXML
 	private Label labelId;
@@ -85,7 +98,8 @@ public class SellerFormController implements Initializable {
 	private ObservableList<Department> obsListDepartments;
 
 	public void setSeller(Seller entity) {
-		this.entity = entity;
+		// a copy, since rows of the list are views that change when another client's update arrives
+		this.entity = copyOf(entity);
 	}
 
 	public void setServices(SellerService service, DepartmentService dpService) {
@@ -93,12 +107,16 @@ public class SellerFormController implements Initializable {
 		this.dpService = dpService;
 	}
 
-	public void subscribeDataChangeListener(DataChangeListener listener) {
+	public void subscribeDataChangeListener(DataChangeListener<Seller> listener) {
 		// other objects, as long as they implement the DataChangeListener interface,
 		// can "subscribe" to receive events from my class
 		dataChangeListeners.add(listener);
 	}
 
+	public void clearDataChangeListeners() {
+		dataChangeListeners.clear();
+	}
+
 	@FXML
 	public void onBtSaveAction(ActionEvent event) {
 
@@ -112,66 +130,169 @@ public class SellerFormController implements Initializable {
 			throw new IllegalStateException("Service was null!");
 		}
 		try {
-			entity = getFormData();
-			service.saveOrUpdate(entity);
-			notifyDataChangeListeners();
-
-			Utils.currentStage(event).close();
+			save(getFormData(), Utils.currentStage(event));
 		} catch (ValidationException e) {
 			setErrorMessages(e.getErrors());
+		}
+
+	}
+
+	private void save(Seller seller, Stage stage) {
+		try {
+			DataChangeEvent.Type type = seller.getId() == null ? DataChangeEvent.Type.INSERTED
+					: DataChangeEvent.Type.UPDATED;
+			SellerWriteQueue writeQueue = SellerWriteQueue.get();
+			if (writeQueue != null) {
+				// saved in the background; the lists hear about new sellers once they have an id
+				writeQueue.offer(seller);
+				entity = seller;
+				if (type == DataChangeEvent.Type.UPDATED) {
+					notifyDataChangeListeners(new DataChangeEvent<>(type, seller, seller.getId()));
+				}
+				stage.close();
+				return;
+			}
+			service.saveOrUpdate(seller);
+			entity = seller;
+			ChangeWatcher.sellerSaved(seller);
+			notifyDataChangeListeners(new DataChangeEvent<>(type, seller, seller.getId()));
+
+			stage.close();
+		} catch (DbConflictException e) {
+			resolveConflict(seller, stage);
 		} catch (DbException e) {
 			Alerts.showAlert("Error saving object", null, e.getMessage(), AlertType.ERROR);
 		}
-
 	}
 
-	private void notifyDataChangeListeners() {
-		// notify all "subscribers"
-		for (DataChangeListener listener : dataChangeListeners) {
-			listener.onDataChanged();
+	/*
+	 * Another user saved the seller after this form was opened. Merge keeps the fields only
+	 * this form changed and takes the others from the saved seller, for review before saving
+	 * again; Save mine overwrites the saved seller; Load theirs drops this form's changes.
+	 */
+	private void resolveConflict(Seller mine, Stage stage) {
+		Seller theirs;
+		try {
+			theirs = service.findById(mine.getId());
+		} catch (DbException e) {
+			Alerts.showAlert("Error saving object", null, e.getMessage(), AlertType.ERROR);
+			return;
+		}
+		if (theirs == null) {
+			Alerts.showAlert("Seller deleted", null, "Another user deleted this seller, your changes can't be saved.",
+					AlertType.WARNING);
+			notifyDataChangeListeners(new DataChangeEvent<>(DataChangeEvent.Type.DELETED, mine, mine.getId()));
+			stage.close();
+			return;
+		}
+
+		ButtonType merge = new ButtonType("Merge");
+		ButtonType saveMine = new ButtonType("Save mine");
+		ButtonType loadTheirs = new ButtonType("Load theirs");
+		Alert alert = new Alert(AlertType.WARNING, describeConflict(entity, mine, theirs), merge, saveMine, loadTheirs,
+				ButtonType.CANCEL);
+		alert.initOwner(stage);
+		alert.setTitle("Seller changed by another user");
+		alert.setHeaderText("Another user saved this seller while you were editing it.");
+		Optional<ButtonType> choice = alert.showAndWait();
+
+		if (choice.isPresent() && choice.get() == merge) {
+			Seller merged = merge(entity, mine, theirs);
+			entity = theirs;
+			showSeller(merged);
+		} else if (choice.isPresent() && choice.get() == saveMine) {
+			mine.setVersion(theirs.getVersion());
+			save(mine, stage);
+		} else if (choice.isPresent() && choice.get() == loadTheirs) {
+			entity = theirs;
+			showSeller(theirs);
+			notifyDataChangeListeners(new DataChangeEvent<>(DataChangeEvent.Type.UPDATED, theirs, theirs.getId()));
 		}
 	}
 
-	private Seller getFormData() {
+	private static String describeConflict(Seller base, Seller mine, Seller theirs) {
+		StringBuilder sb = new StringBuilder("Changed by the other user:\n");
+		String[] fields = { "Name", "Email", "Birth date", "Base salary", "Department" };
+		Object[] baseValues = values(base);
+		Object[] mineValues = values(mine);
+		Object[] theirValues = values(theirs);
+		for (int i = 0; i < fields.length; i++) {
+			if (!Objects.equals(baseValues[i], theirValues[i])) {
+				sb.append("  ").append(fields[i]).append(": ").append(theirValues[i]);
+				if (!Objects.equals(baseValues[i], mineValues[i]) && !Objects.equals(mineValues[i], theirValues[i])) {
+					sb.append(" (you changed it to ").append(mineValues[i]).append(")");
+				}
+				sb.append("\n");
+			}
+		}
+		return sb.toString();
+	}
 
-		Seller seller = new Seller();
+	// a field this form changed keeps its value, every other field takes the saved one
+	private static Seller merge(Seller base, Seller mine, Seller theirs) {
+		Seller merged = copyOf(theirs);
+		if (!Objects.equals(base.getName(), mine.getName())) {
+			merged.setName(mine.getName());
+		}
+		if (!Objects.equals(base.getEmail(), mine.getEmail())) {
+			merged.setEmail(mine.getEmail());
+		}
+		if (!Objects.equals(toLocalDate(base.getBirthDate()), toLocalDate(mine.getBirthDate()))) {
+			merged.setBirthDate(mine.getBirthDate());
+		}
+		if (!Objects.equals(base.getBaseSalary(), mine.getBaseSalary())) {
+			merged.setBaseSalary(mine.getBaseSalary());
+		}
+		if (!Objects.equals(base.getDepartment(), mine.getDepartment())) {
+			merged.setDepartment(mine.getDepartment());
+		}
+		return merged;
+	}
 
-		// textFieldName can't be empty
+	// birth dates compare by day, the form drops the time of day
+	private static Object[] values(Seller seller) {
+		return new Object[] { seller.getName(), seller.getEmail(), toLocalDate(seller.getBirthDate()),
+				seller.getBaseSalary(),
+				seller.getDepartment() == null ? null : seller.getDepartment().getName() };
+	}
 
-		ValidationException exception = new ValidationException("Validation Error");
+	private static LocalDate toLocalDate(Date date) {
+		return date == null ? null : LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault());
+	}
 
-		seller.setId(Utils.tryParseToInt(textFieldId.getText()));
+	private static Seller copyOf(Seller seller) {
+		Seller copy = new Seller(seller.getId(), seller.getName(), seller.getEmail(), seller.getBirthDate(),
+				seller.getBaseSalary(), seller.getDepartment());
+		copy.setVersion(seller.getVersion());
+		return copy;
+	}
 
-		if (textFieldName.getText() == null || textFieldName.getText().trim().isEmpty()) {
-			exception.addError("name", "Field can't be empty");
+	private void notifyDataChangeListeners(DataChangeEvent<Seller> event) {
+		// notify all "subscribers"
+		for (DataChangeListener<Seller> listener : dataChangeListeners) {
+			listener.onDataChanged(event);
 		}
+	}
 
-		seller.setName(textFieldName.getText());
+	private Seller getFormData() {
 
-		if (textFieldEmail.getText() == null || textFieldEmail.getText().trim().isEmpty()) {
-			exception.addError("email", "Field can't be empty");
-		}
+		Seller seller = new Seller();
 
+		seller.setId(Utils.tryParseToInt(textFieldId.getText()));
+		seller.setVersion(entity.getVersion());
+		seller.setName(textFieldName.getText());
 		seller.setEmail(textFieldEmail.getText());
 
-		if (dpBirthDate.getValue() == null) {
-			exception.addError("birthDate", "Field can't be empty");
-		} else {
+		if (dpBirthDate.getValue() != null) {
 			Instant instant = Instant.from(dpBirthDate.getValue().atStartOfDay(ZoneId.systemDefault()));
 			seller.setBirthDate(Date.from(instant));
 		}
 
-		if (textFieldBaseSalary.getText() == null || textFieldBaseSalary.getText().trim().isEmpty()) {
-			exception.addError("baseSalary", "Field can't be empty");
-		}
-
 		seller.setBaseSalary(Utils.tryParseToDouble(textFieldBaseSalary.getText()));
 		
 		seller.setDepartment(comboBoxDepartment.getValue());
 		
-		if (exception.getErrors().size() > 0) {
-			throw exception;
-		}
+		SellerValidator.validate(seller);
 
 		return seller;
 	}
@@ -199,24 +320,32 @@ public class SellerFormController implements Initializable {
 		if (entity == null) {
 			throw new IllegalStateException("Entity was null!");
 		}
+		locale = local;
+		showSeller(entity);
+	}
 
-		textFieldId.setText(String.valueOf(entity.getId()));
-		textFieldName.setText(entity.getName());
+	private void showSeller(Seller seller) {
+		textFieldId.setText(String.valueOf(seller.getId()));
+		textFieldName.setText(seller.getName());
+		setErrorMessages(Collections.emptyMap());
 
-		textFieldEmail.setText(entity.getEmail());
+		textFieldEmail.setText(seller.getEmail());
 
-		Locale.setDefault(local);
+		Locale.setDefault(locale);
 
-		textFieldBaseSalary.setText(String.format("%.2f", entity.getBaseSalary()));
+		textFieldBaseSalary.setText(String.format("%.2f", seller.getBaseSalary()));
 
-		if (entity.getBirthDate() != null) {
-			dpBirthDate.setValue(LocalDate.ofInstant(entity.getBirthDate().toInstant(), ZoneId.systemDefault()));
+		if (seller.getBirthDate() != null) {
+			dpBirthDate.setValue(toLocalDate(seller.getBirthDate()));
+		} else {
+			// the form is reused, clear the date of the last seller shown
+			dpBirthDate.setValue(null);
 		}
 
-		if (entity.getDepartment() == null) { //new seller
+		if (seller.getDepartment() == null) { //new seller
 			comboBoxDepartment.getSelectionModel().selectFirst();
 		} else {
-			comboBoxDepartment.setValue(entity.getDepartment());
+			comboBoxDepartment.setValue(seller.getDepartment());
 		}
 	}
 
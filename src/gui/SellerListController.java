@@ -1,44 +1,74 @@
 package gui;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import application.Main;
+import db.DbExecutor;
 import db.DbIntegrityException;
+import gui.listeners.DataChangeEvent;
 import gui.listeners.DataChangeListener;
 import gui.util.Alerts;
+import gui.util.ChangeWatcher;
+import gui.util.Constraints;
+import gui.util.FormDialog;
+import gui.util.PagedList;
+import gui.util.TableLoader;
 import gui.util.Utils;
+import javafx.animation.PauseTransition;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.layout.Pane;
-import javafx.stage.Modality;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Callback;
+import javafx.util.Duration;
+import model.dao.SellerCriteria;
+import model.entities.Department;
 import model.entities.Seller;
 import model.services.DepartmentService;
+import model.services.SellerExportService;
+import model.services.SellerImportService;
 import model.services.SellerService;
 
-public class SellerListController implements Initializable, DataChangeListener {
+public class SellerListController implements Initializable, DataChangeListener<Seller> {
+	
+	private static final int PAGE_SIZE = 100;
+	private static final int MAX_LOADED_PAGES = 10;
+	private static final int MAX_REPORTED_ERRORS = 20;
+	private static final Duration SEARCH_DELAY = Duration.millis(300);
 	
 	private SellerService service;
 	
@@ -63,13 +93,55 @@ public class SellerListController implements Initializable, DataChangeListener {
 	@FXML
 	private Button btNew;
 	
+	@FXML
+	private Button btImport;
+	
+	@FXML
+	private Button btExport;
+	
+	@FXML
+	private Label labelStatus;
+	
+	@FXML
+	private TextField textFieldSearch;
+	
+	@FXML
+	private ComboBox<Department> comboBoxSearchDepartment;
+	
+	@FXML
+	private TextField textFieldMinSalary;
+	
+	@FXML
+	private TextField textFieldMaxSalary;
+	
+	@FXML
+	private DatePicker dpBornFrom;
+	
+	@FXML
+	private DatePicker dpBornTo;
+	
+	@FXML
+	private Button btClearSearch;
+	
 	@FXML
 	private TableColumn<Seller, Seller> tableColumnEDIT;
 	
 	@FXML
 	private TableColumn<Seller, Seller> tableColumnREMOVE;
 	
-	private ObservableList<Seller> sellersObservableList;
+	private PagedList<Seller> sellersObservableList;
+
+	private TableLoader<Seller> tableLoader;
+	
+	private SellerImportTask importTask;
+	
+	private SellerExportTask exportTask;
+	
+	// sellers deleted from this view, whose delete the change watcher has not reported yet
+	private Set<Integer> removedIds = new HashSet<>();
+	
+	// restarted on every change of the search bar, the query runs once typing pauses
+	private PauseTransition searchDelay;
 
 	public void setSellerService(SellerService service) {
 		this.service = service;
@@ -82,6 +154,114 @@ public class SellerListController implements Initializable, DataChangeListener {
 		
 		createDialogForm(seller, "/gui/SellerForm.fxml", stage);
 	}
+	
+	@FXML
+	public void onBtClearSearchAction(ActionEvent event) {
+		textFieldSearch.clear();
+		comboBoxSearchDepartment.setValue(null);
+		textFieldMinSalary.clear();
+		textFieldMaxSalary.clear();
+		dpBornFrom.setValue(null);
+		dpBornTo.setValue(null);
+	}
+	
+	@FXML
+	public void onBtImportAction(ActionEvent event) {
+		if (importTask != null) {
+			importTask.cancel();
+			return;
+		}
+		
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Import Sellers");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+		File file = fileChooser.showOpenDialog(Utils.currentStage(event));
+		if (file == null) {
+			return;
+		}
+		
+		SellerImportTask task = new SellerImportTask(new SellerImportService(), file.toPath());
+		labelStatus.textProperty().bind(task.messageProperty());
+		btImport.setText("Cancel import");
+		
+		task.setOnSucceeded(e -> {
+			finishImport();
+			labelStatus.setText(task.getMessage());
+			if (!task.errors.isEmpty()) {
+				Alerts.showAlert("Import finished with errors", task.getMessage(), String.join("\n", task.errors),
+						AlertType.WARNING);
+			}
+			updateTableView();
+		});
+		task.setOnCancelled(e -> {
+			finishImport();
+			labelStatus.setText("Import cancelled");
+			updateTableView();
+		});
+		task.setOnFailed(e -> {
+			finishImport();
+			labelStatus.setText("");
+			Alerts.showAlert("Error importing sellers", null, task.getException().getMessage(), AlertType.ERROR);
+		});
+		
+		importTask = task;
+		DbExecutor.execute(task);
+	}
+	
+	private void finishImport() {
+		importTask = null;
+		labelStatus.textProperty().unbind();
+		btImport.setText("Import CSV");
+	}
+	
+	@FXML
+	public void onBtExportAction(ActionEvent event) {
+		if (exportTask != null) {
+			exportTask.cancel();
+			return;
+		}
+		
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Export Sellers");
+		FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV files", "*.csv");
+		FileChooser.ExtensionFilter jsonFilter = new FileChooser.ExtensionFilter("JSON files", "*.json");
+		fileChooser.getExtensionFilters().addAll(csvFilter, jsonFilter);
+		File file = fileChooser.showSaveDialog(Utils.currentStage(event));
+		if (file == null) {
+			return;
+		}
+		
+		SellerExportService.Format format = fileChooser.getSelectedExtensionFilter() == jsonFilter
+				|| file.getName().toLowerCase().endsWith(".json") ? SellerExportService.Format.JSON
+						: SellerExportService.Format.CSV;
+		
+		SellerExportTask task = new SellerExportTask(new SellerExportService(), file.toPath(), format);
+		labelStatus.textProperty().bind(task.messageProperty());
+		btExport.setText("Cancel export");
+		
+		task.setOnSucceeded(e -> {
+			finishExport();
+			labelStatus.setText(task.getValue() + " rows exported to " + file.getName());
+		});
+		task.setOnCancelled(e -> {
+			finishExport();
+			labelStatus.setText("Export cancelled");
+		});
+		task.setOnFailed(e -> {
+			finishExport();
+			labelStatus.setText("");
+			Alerts.showAlert("Error exporting sellers", null, task.getException().getMessage(), AlertType.ERROR);
+		});
+		
+		exportTask = task;
+		DbExecutor.execute(task);
+	}
+	
+	private void finishExport() {
+		exportTask = null;
+		labelStatus.textProperty().unbind();
+		btExport.setText("Export");
+	}
 
 	@Override
 	public void initialize(URL uri, ResourceBundle rb) {
@@ -94,7 +274,7 @@ public class SellerListController implements Initializable, DataChangeListener {
 		tableColumnEmail.setCellValueFactory(new PropertyValueFactory<>("email"));
 		
 		tableColumnBirthDate.setCellValueFactory(new PropertyValueFactory<>("birthDate"));
-		Utils.formatTableColumnDate(tableColumnBirthDate, "dd/MM/YYYY");
+		Utils.formatTableColumnDate(tableColumnBirthDate, "dd/MM/yyyy");
 		
 		tableColumnBaseSalary.setCellValueFactory(new PropertyValueFactory<>("baseSalary"));
 		Utils.formatTableColumnDouble(tableColumnBaseSalary, new Locale("PT", "pt"));
@@ -102,15 +282,108 @@ public class SellerListController implements Initializable, DataChangeListener {
 		TableColumn<Seller,String> sellerNameCol = new TableColumn<Seller,String>("Department");
 		sellerNameCol.setCellValueFactory(new Callback<CellDataFeatures<Seller, String>, ObservableValue<String>>() {
 		     public ObservableValue<String> call(CellDataFeatures<Seller, String> p) {
-		     	 return p.getValue().getDepartment().getDepartmentName();
+		     	 // rows of pages that are still loading are null
+		     	 return p.getValue() == null ? null : p.getValue().getDepartment().getDepartmentName();
 		     }
 		  });
 		 
 		tableViewSeller.getColumns().add(sellerNameCol);		
+		
+		// rows come from the database already ordered by name, a paged list can't be sorted in place
+		tableViewSeller.getColumns().forEach(column -> column.setSortable(false));
 	
-		Stage stage  = (Stage) Main.getMainScene().getWindow();
-		tableViewSeller.prefHeightProperty().bind(stage.heightProperty());
+		// the view may be preloaded off the FX thread, the stage is only touched on it
+		Utils.runOnFxThread(() -> {
+			Stage stage  = (Stage) Main.getMainScene().getWindow();
+			tableViewSeller.prefHeightProperty().bind(stage.heightProperty());
+		});
 		
+		tableLoader = new TableLoader<>(tableViewSeller);
+		
+		initEditButtons();
+		initDeleteButtons();
+		
+		// changes made by other clients arrive as the same events as the form's
+		ChangeWatcher.subscribeSellers(this, tableViewSeller);
+		
+		initializeSearchBar();
+	}
+	
+	private void initializeSearchBar() {
+		Constraints.setTextFieldDouble(textFieldMinSalary);
+		Constraints.setTextFieldDouble(textFieldMaxSalary);
+		Utils.formatDatePicker(dpBornFrom, "dd/MM/yyyy");
+		Utils.formatDatePicker(dpBornTo, "dd/MM/yyyy");
+		dpBornFrom.setPromptText("Born from");
+		dpBornTo.setPromptText("Born to");
+		
+		Callback<ListView<Department>, ListCell<Department>> factory = lv -> new ListCell<Department>() {
+			@Override
+			protected void updateItem(Department item, boolean empty) {
+				super.updateItem(item, empty);
+				setText(empty ? "" : item == null ? "All departments" : item.getName());
+			}
+		};
+		comboBoxSearchDepartment.setCellFactory(factory);
+		comboBoxSearchDepartment.setButtonCell(factory.call(null));
+		
+		Task<List<Department>> departmentsTask = new Task<List<Department>>() {
+			@Override
+			protected List<Department> call() {
+				return new DepartmentService().findAll();
+			}
+		};
+		departmentsTask.setOnSucceeded(e -> {
+			ObservableList<Department> departments = FXCollections.observableArrayList();
+			departments.add(null);
+			departments.addAll(departmentsTask.getValue());
+			comboBoxSearchDepartment.setItems(departments);
+		});
+		DbExecutor.execute(departmentsTask);
+		
+		searchDelay = new PauseTransition(SEARCH_DELAY);
+		searchDelay.setOnFinished(e -> updateTableView());
+		
+		textFieldSearch.textProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+		textFieldMinSalary.textProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+		textFieldMaxSalary.textProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+		comboBoxSearchDepartment.valueProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+		dpBornFrom.valueProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+		dpBornTo.valueProperty().addListener((obs, oldValue, newValue) -> searchDelay.playFromStart());
+	}
+	
+	private SellerCriteria getSearchCriteria() {
+		SellerCriteria criteria = new SellerCriteria();
+		
+		String text = textFieldSearch.getText() == null ? "" : textFieldSearch.getText().trim();
+		if (!text.isEmpty()) {
+			// only emails contain '@', anything else is taken as the start of a name
+			if (text.indexOf('@') >= 0) {
+				criteria.setEmailPrefix(text);
+			} else {
+				criteria.setNamePrefix(text);
+			}
+		}
+		
+		if (comboBoxSearchDepartment.getValue() != null) {
+			criteria.setDepartmentId(comboBoxSearchDepartment.getValue().getId());
+		}
+		
+		if (!textFieldMinSalary.getText().trim().isEmpty()) {
+			criteria.setMinBaseSalary(Utils.tryParseToDouble(textFieldMinSalary.getText()));
+		}
+		if (!textFieldMaxSalary.getText().trim().isEmpty()) {
+			criteria.setMaxBaseSalary(Utils.tryParseToDouble(textFieldMaxSalary.getText()));
+		}
+		
+		if (dpBornFrom.getValue() != null) {
+			criteria.setBornFrom(Date.from(dpBornFrom.getValue().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+		}
+		if (dpBornTo.getValue() != null) {
+			criteria.setBornTo(Date.from(dpBornTo.getValue().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+		}
+		
+		return criteria;
 	}
 	
 	public void updateTableView() {
@@ -118,37 +391,62 @@ public class SellerListController implements Initializable, DataChangeListener {
 			throw new IllegalStateException("Service was null!");
 		}
 		
-		List <Seller> list = service.findAll();
-		sellersObservableList = FXCollections.observableArrayList(list);
+		if (searchDelay != null) {
+			searchDelay.stop();
+		}
 		
-		tableViewSeller.setItems(sellersObservableList);
+		SellerService pageService = service;
+		SellerCriteria criteria = getSearchCriteria();
+		PagedList.PageSource<Seller> source = new PagedList.PageSource<Seller>() {
+			@Override
+			public int count() {
+				return pageService.count(criteria);
+			}
+
+			@Override
+			public List<Seller> fetchPage(Seller after, int pageSize) {
+				return pageService.findPage(criteria, after, pageSize);
+			}
+
+			@Override
+			public Seller keyAt(int index) {
+				return pageService.findKeyAt(criteria, index);
+			}
+
+			@Override
+			public Seller keyOf(Seller row) {
+				// pages are SellerTables, keep only the (Name, Id) key instead of a view into one
+				Seller key = new Seller();
+				key.setId(row.getId());
+				key.setName(row.getName());
+				return key;
+			}
+		};
 		
-		initEditButtons();
-		initDeleteButtons();
+		tableLoader.load(() -> PagedList.open(source, PAGE_SIZE, MAX_LOADED_PAGES), list -> {
+			sellersObservableList = list;
+			
+			tableViewSeller.setItems(sellersObservableList);
+		});
 	}
 
 	private void createDialogForm(Seller seller, String absoluteName, Stage parentStage) {
 		
 		try {
-			FXMLLoader loader = new FXMLLoader(getClass().getResource(absoluteName));
-			Pane pane = loader.load();
+			// the form is loaded once and bound to each seller it edits
+			FormDialog<SellerFormController> dialog = FormDialog.of(absoluteName, "Enter Seller Data", parentStage,
+					(SellerFormController controller) -> controller.setServices(new SellerService(), new DepartmentService()));
 			
-			SellerFormController controller = loader.getController();
+			SellerFormController controller = dialog.getController();
 			controller.setSeller(seller);
-			controller.setServices(new SellerService(), new DepartmentService());
 			controller.loadAssociatedObjects();
-			// subscribe DataChangeListener events
+			// subscribe DataChangeListener events, replacing the list view that opened it last
+			controller.clearDataChangeListeners();
 			controller.subscribeDataChangeListener(this);
 			
 			controller.updateFormData(new Locale("PT", "pt"));
 			
-			Stage dialogStage = new Stage();
-			dialogStage.setTitle("Enter Seller Data");
-			dialogStage.setScene(new Scene(pane));
-			dialogStage.setResizable(false);
-			dialogStage.initOwner(parentStage);
-			dialogStage.initModality(Modality.WINDOW_MODAL);
-			dialogStage.showAndWait();
+			dialog.showAndWait();
 		}
 		catch(IOException e) {
 			Alerts.showAlert("IOException", "Error loading view", e.getMessage(), AlertType.ERROR);
@@ -157,9 +455,38 @@ public class SellerListController implements Initializable, DataChangeListener {
 	
 	
 	@Override
-	public void onDataChanged() {
-		// we need to update TableView
-		updateTableView();
+	public void onDataChanged(DataChangeEvent<Seller> event) {
+		if (!patch(event)) {
+			updateTableView();
+		}
+	}
+
+	// a batch, e.g. an import seen by the change watcher, reloads at most once
+	@Override
+	public void onDataChanges(List<DataChangeEvent<Seller>> events) {
+		boolean reload = false;
+		for (DataChangeEvent<Seller> event : events) {
+			if (reload || !patch(event)) {
+				reload = true;
+			}
+		}
+		if (reload) {
+			updateTableView();
+		}
+	}
+
+	// false when the list has to be reloaded instead
+	private boolean patch(DataChangeEvent<Seller> event) {
+		// a new row's position in the name order is only known to the database, so inserts reload
+		if (sellersObservableList == null || event.getType() == DataChangeEvent.Type.INSERTED) {
+			return false;
+		} else if (event.getType() == DataChangeEvent.Type.UPDATED) {
+			sellersObservableList.updateRow(event.getEntity());
+			return true;
+		}
+		// a row deleted elsewhere that is not loaded still counts in the list size
+		return removedIds.remove(event.getId())
+				|| sellersObservableList.removeRow(new Seller(event.getId(), null, null, null, null, null));
 	}
 
 	private void initEditButtons() {
@@ -215,7 +542,9 @@ public class SellerListController implements Initializable, DataChangeListener {
 			}
 			try {
 				service.remove(obj);
-				updateTableView();
+				sellersObservableList.removeRow(obj);
+				// the change watcher reports this delete again later
+				removedIds.add(obj.getId());
 			}
 			catch(DbIntegrityException e) {
 				Alerts.showAlert("Error removing object", null, e.getMessage(), AlertType.ERROR);
@@ -223,4 +552,64 @@ public class SellerListController implements Initializable, DataChangeListener {
 		}
 	}
 	
+	private static class SellerImportTask extends Task<SellerImportService.Progress>
+			implements SellerImportService.ImportListener {
+		
+		private final SellerImportService importService;
+		private final Path file;
+		// read on the FX thread once the task is done
+		private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		private final AtomicLong errorCount = new AtomicLong();
+		
+		SellerImportTask(SellerImportService importService, Path file) {
+			this.importService = importService;
+			this.file = file;
+		}
+		
+		@Override
+		protected SellerImportService.Progress call() {
+			updateMessage("Importing...");
+			return importService.importCsv(file, this);
+		}
+		
+		@Override
+		public void onProgress(SellerImportService.Progress progress) {
+			updateMessage(String.format("%d rows imported, %d failed (%.0f rows/s)", progress.getRowsImported(),
+					progress.getRowsFailed(), progress.getRowsPerSecond()));
+		}
+		
+		@Override
+		public void onRowError(long lineNumber, String message) {
+			long count = errorCount.incrementAndGet();
+			if (count <= MAX_REPORTED_ERRORS) {
+				errors.add("Line " + lineNumber + ": " + message);
+			} else if (count == MAX_REPORTED_ERRORS + 1) {
+				errors.add("...");
+			}
+		}
+	}
+	
+	private static class SellerExportTask extends Task<Long> implements SellerExportService.ExportListener {
+		
+		private final SellerExportService exportService;
+		private final Path file;
+		private final SellerExportService.Format format;
+		
+		SellerExportTask(SellerExportService exportService, Path file, SellerExportService.Format format) {
+			this.exportService = exportService;
+			this.file = file;
+			this.format = format;
+		}
+		
+		@Override
+		protected Long call() {
+			updateMessage("Exporting...");
+			return exportService.export(file, format, this);
+		}
+		
+		@Override
+		public void onProgress(long rowsWritten) {
+			updateMessage(rowsWritten + " rows exported");
+		}
+	}
 }
@@ -1,5 +1,14 @@
 package gui.listeners;
 
-public interface DataChangeListener {
-	void onDataChanged();
+import java.util.List;
+
+public interface DataChangeListener<T> {
+	void onDataChanged(DataChangeEvent<T> event);
+
+	// changes delivered together, e.g. one poll of the change log; a listener that reloads can do it once
+	default void onDataChanges(List<DataChangeEvent<T>> events) {
+		for (DataChangeEvent<T> event : events) {
+			onDataChanged(event);
+		}
+	}
 }
@@ -0,0 +1,235 @@
+package gui.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import db.DB;
+import gui.listeners.DataChangeEvent;
+import gui.listeners.DataChangeListener;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import model.dao.ChangeLogEntry.Operation;
+import model.entities.Department;
+import model.entities.Seller;
+import model.services.ChangeService;
+
+/*
+ * Polls the change log on a background thread and hands the changes other clients made
+ * to the open list views as DataChangeEvents, so they patch the rows that changed.
+ * A subscription starts delivering once its owner node is shown and is dropped once the view is replaced.
+ * Sellers this client saved come back from the poll too; while still at the version saved they are dropped.
+ */
+public class ChangeWatcher {
+
+	private static final Logger LOG = Logger.getLogger(ChangeWatcher.class.getName());
+
+	private static final int MAX_OWN_SELLERS = 1000;
+
+	private static ScheduledExecutorService poller = null;
+
+	// only touched on the FX thread
+	private static final List<Subscription<Seller>> sellerSubscriptions = new ArrayList<>();
+	private static final List<Subscription<Department>> departmentSubscriptions = new ArrayList<>();
+	// seller id -> version this client saved, oldest first
+	private static final Map<Integer, Integer> ownSellers = new LinkedHashMap<>();
+
+	public static synchronized void start() {
+		if (poller != null) {
+			return;
+		}
+		Properties props = DB.loadProperties();
+		long interval = DB.longProperty(props, "changes.pollIntervalMillis", 2000);
+		if (interval <= 0) {
+			return;
+		}
+		int maxPerPoll = Math.max(1, DB.intProperty(props, "changes.maxPerPoll", 500));
+		long retentionMillis = DB.longProperty(props, "changes.retentionHours", 24) * 3600000;
+		long purgeIntervalMillis = DB.longProperty(props, "changes.purgeIntervalMillis", 3600000);
+		long recheckIds = DB.longProperty(props, "changes.recheckIds", 10000);
+		long recheckMillis = DB.longProperty(props, "changes.recheckMillis", 60000);
+
+		poller = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "db-change-poller");
+			t.setDaemon(true);
+			return t;
+		});
+		poller.scheduleWithFixedDelay(new Poll(maxPerPoll, retentionMillis, purgeIntervalMillis, recheckIds, recheckMillis),
+				0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public static synchronized void stop() {
+		if (poller != null) {
+			poller.shutdownNow();
+			poller = null;
+		}
+	}
+
+	// may be called off the FX thread, by views that are preloaded
+	public static void subscribeSellers(DataChangeListener<Seller> listener, Node owner) {
+		Utils.runOnFxThread(() -> sellerSubscriptions.add(new Subscription<>(listener, owner)));
+	}
+
+	public static void subscribeDepartments(DataChangeListener<Department> listener, Node owner) {
+		Utils.runOnFxThread(() -> departmentSubscriptions.add(new Subscription<>(listener, owner)));
+	}
+
+	// changes this client made that no form reports, e.g. seller saves the write-behind queue flushed
+	public static void publishSeller(DataChangeEvent<Seller> event) {
+		Utils.runOnFxThread(() -> {
+			if (event.getEntity() != null) {
+				sellerSaved(event.getEntity());
+			}
+			deliver(sellerSubscriptions, Collections.singletonList(event));
+		});
+	}
+
+	// on the FX thread, by the views that told the lists about a seller they saved
+	public static void sellerSaved(Seller seller) {
+		ownSellers.remove(seller.getId());
+		ownSellers.put(seller.getId(), seller.getVersion());
+		if (ownSellers.size() > MAX_OWN_SELLERS) {
+			ownSellers.remove(ownSellers.keySet().iterator().next());
+		}
+	}
+
+	private static void dispatch(ChangeService.Changes changes) {
+		deliver(departmentSubscriptions, toEvents(changes.getDepartments()));
+		deliver(sellerSubscriptions, toEvents(dropOwn(changes.getSellers())));
+	}
+
+	private static List<ChangeService.Change<Seller>> dropOwn(List<ChangeService.Change<Seller>> changes) {
+		if (ownSellers.isEmpty()) {
+			return changes;
+		}
+		List<ChangeService.Change<Seller>> others = new ArrayList<>(changes.size());
+		for (ChangeService.Change<Seller> change : changes) {
+			Seller seller = change.getEntity();
+			if (seller == null || !ownSellers.remove(change.getId(), seller.getVersion())) {
+				others.add(change);
+			}
+		}
+		return others;
+	}
+
+	private static <T> void deliver(List<Subscription<T>> subscriptions, List<DataChangeEvent<T>> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		Iterator<Subscription<T>> it = subscriptions.iterator();
+		while (it.hasNext()) {
+			Subscription<T> subscription = it.next();
+			if (subscription.owner.getScene() == null) {
+				// a preloaded view that is not shown yet, or one that was replaced
+				if (subscription.shown) {
+					it.remove();
+				}
+				continue;
+			}
+			subscription.listener.onDataChanges(events);
+		}
+	}
+
+	private static <T> List<DataChangeEvent<T>> toEvents(List<ChangeService.Change<T>> changes) {
+		List<DataChangeEvent<T>> events = new ArrayList<>(changes.size());
+		for (ChangeService.Change<T> change : changes) {
+			events.add(toEvent(change));
+		}
+		return events;
+	}
+
+	private static <T> DataChangeEvent<T> toEvent(ChangeService.Change<T> change) {
+		DataChangeEvent.Type type = change.getOperation() == Operation.INSERT ? DataChangeEvent.Type.INSERTED
+				: change.getOperation() == Operation.UPDATE ? DataChangeEvent.Type.UPDATED
+						: DataChangeEvent.Type.DELETED;
+		return new DataChangeEvent<>(type, change.getEntity(), change.getId());
+	}
+
+	private static class Subscription<T> {
+		final DataChangeListener<T> listener;
+		final Node owner;
+		boolean shown;
+
+		Subscription(DataChangeListener<T> listener, Node owner) {
+			this.listener = listener;
+			this.owner = owner;
+			shown = owner.getScene() != null;
+			if (!shown) {
+				owner.sceneProperty().addListener(new ChangeListener<Scene>() {
+					@Override
+					public void changed(ObservableValue<? extends Scene> observable, Scene oldScene, Scene newScene) {
+						if (newScene != null) {
+							shown = true;
+							observable.removeListener(this);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private static class Poll implements Runnable {
+		private final int maxPerPoll;
+		private final long retentionMillis;
+		private final long purgeIntervalMillis;
+		private final long recheckIds;
+		private final long recheckMillis;
+		private ChangeService service;
+		private long lastId = -1;
+		private long lastPurge;
+
+		Poll(int maxPerPoll, long retentionMillis, long purgeIntervalMillis, long recheckIds, long recheckMillis) {
+			this.maxPerPoll = maxPerPoll;
+			this.retentionMillis = retentionMillis;
+			this.purgeIntervalMillis = purgeIntervalMillis;
+			this.recheckIds = recheckIds;
+			this.recheckMillis = recheckMillis;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (service == null) {
+					service = new ChangeService(recheckIds, recheckMillis);
+				}
+				// a client that stays open keeps the table trimmed too
+				long now = System.currentTimeMillis();
+				if (lastId < 0 || (purgeIntervalMillis > 0 && now - lastPurge >= purgeIntervalMillis)) {
+					service.purgeOlderThan(retentionMillis);
+					lastPurge = now;
+				}
+				if (lastId < 0) {
+					// the views load the current state themselves, only later changes matter
+					lastId = service.findLatestId();
+					return;
+				}
+
+				ChangeService.Changes changes;
+				do {
+					changes = service.findChangesAfter(lastId, maxPerPoll);
+					lastId = changes.getLastId();
+					if (!changes.isEmpty()) {
+						ChangeService.Changes batch = changes;
+						Platform.runLater(() -> dispatch(batch));
+					}
+				} while (changes.hasMore() && !Thread.currentThread().isInterrupted());
+			}
+			catch (RuntimeException e) {
+				// keep polling, the database may just be unreachable for a moment
+				LOG.log(Level.WARNING, "Polling for changes failed: " + e.getMessage());
+			}
+		}
+	}
+}
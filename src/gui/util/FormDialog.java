@@ -0,0 +1,62 @@
+package gui.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Scene;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+/*
+ * A modal form kept loaded between uses: one stage and controller per form and owner window.
+ * The caller binds the controller to the entity being edited before each showAndWait(),
+ * so the controller must reset every field and message it shows when bound again.
+ */
+public class FormDialog<C> {
+
+	// only touched on the FX thread
+	private static final Map<String, FormDialog<?>> dialogs = new HashMap<>();
+
+	private final Stage stage;
+	private final C controller;
+
+	private FormDialog(Stage stage, C controller) {
+		this.stage = stage;
+		this.controller = controller;
+	}
+
+	// onCreate runs once, when the form is first loaded, e.g. to give the controller its services
+	@SuppressWarnings("unchecked")
+	public static <C> FormDialog<C> of(String absoluteName, String title, Window owner, Consumer<C> onCreate)
+			throws IOException {
+		FormDialog<?> dialog = dialogs.get(absoluteName);
+		if (dialog == null || dialog.stage.getOwner() != owner) {
+			FXMLLoader loader = ViewCache.take(absoluteName, false);
+
+			Stage stage = new Stage();
+			stage.setTitle(title);
+			stage.setScene(new Scene(loader.getRoot()));
+			stage.setResizable(false);
+			stage.initOwner(owner);
+			stage.initModality(Modality.WINDOW_MODAL);
+
+			C controller = loader.getController();
+			onCreate.accept(controller);
+			dialog = new FormDialog<>(stage, controller);
+			dialogs.put(absoluteName, dialog);
+		}
+		return (FormDialog<C>) dialog;
+	}
+
+	public C getController() {
+		return controller;
+	}
+
+	public void showAndWait() {
+		stage.showAndWait();
+	}
+}
@@ -0,0 +1,137 @@
+package gui.util;
+
+import java.text.NumberFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/*
+ * Formatters built once per pattern and locale and shared. DateTimeFormatter is immutable;
+ * NumberFormat is not thread safe, so each thread gets its own copy of the cached one.
+ * Table columns format through a RowMemo, so scrolling over rows already shown reads
+ * the string made the first time instead of formatting it again.
+ */
+public class Formats {
+
+	private static final Map<String, DateTimeFormatter> dateFormatters = new ConcurrentHashMap<>();
+	private static final Map<Locale, ThreadLocal<NumberFormat>> currencyFormats = new ConcurrentHashMap<>();
+
+	public static DateTimeFormatter dateFormatter(String pattern) {
+		return dateFormatters.computeIfAbsent(pattern, DateTimeFormatter::ofPattern);
+	}
+
+	public static String formatDate(Date date, String pattern) {
+		return dateFormatter(pattern).format(date.toInstant().atZone(ZoneId.systemDefault()));
+	}
+
+	public static NumberFormat currencyFormat(Locale locale) {
+		return currencyFormats.computeIfAbsent(locale,
+				key -> ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(key))).get();
+	}
+
+	public static String formatCurrency(double value, Locale locale) {
+		return currencyFormat(locale).format(value);
+	}
+
+	/*
+	 * Display strings of a column by row index, so repainting a row already shown is an array read
+	 * instead of a format or a hash lookup. One per column, used on the FX thread only. It follows
+	 * the table's item list: a changed row drops its string, rows added or removed drop the strings
+	 * from there on and a new list drops them all. Strings are kept in chunks of rows, the oldest
+	 * chunk dropped first past maxChunks.
+	 */
+	public static class RowMemo<V> {
+		private static final int CHUNK_BITS = 8;
+		private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+		private static final int DEFAULT_CHUNKS = 16;
+
+		private final Function<V, String> format;
+		private final int maxChunks;
+		private final ListChangeListener<Object> listener = this::onChanged;
+		private ObservableList<?> items;
+		private String[][] chunks = new String[0][];
+		// chunk numbers in the order they were created
+		private final ArrayDeque<Integer> created = new ArrayDeque<>();
+
+		public RowMemo(Function<V, String> format) {
+			this(format, DEFAULT_CHUNKS);
+		}
+
+		public RowMemo(Function<V, String> format, int maxChunks) {
+			this.format = format;
+			this.maxChunks = Math.max(1, maxChunks);
+		}
+
+		public String get(ObservableList<?> items, int index, V value) {
+			if (items != this.items) {
+				follow(items);
+			}
+			int chunk = index >>> CHUNK_BITS;
+			if (chunk >= chunks.length) {
+				chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+			}
+			String[] strings = chunks[chunk];
+			if (strings == null) {
+				if (created.size() >= maxChunks) {
+					chunks[created.removeFirst()] = null;
+				}
+				strings = new String[CHUNK_SIZE];
+				chunks[chunk] = strings;
+				created.addLast(chunk);
+			}
+			String text = strings[index & (CHUNK_SIZE - 1)];
+			if (text == null) {
+				text = format.apply(value);
+				strings[index & (CHUNK_SIZE - 1)] = text;
+			}
+			return text;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void follow(ObservableList<?> newItems) {
+			if (items != null) {
+				((ObservableList<Object>) items).removeListener(listener);
+			}
+			items = newItems;
+			((ObservableList<Object>) items).addListener(listener);
+			clear(0, Integer.MAX_VALUE);
+		}
+
+		private void onChanged(ListChangeListener.Change<?> change) {
+			while (change.next()) {
+				if (change.wasPermutated() || change.getAddedSize() != change.getRemovedSize()) {
+					clear(change.getFrom(), Integer.MAX_VALUE);
+				}
+				else {
+					clear(change.getFrom(), Math.max(change.getTo(), change.getFrom() + change.getAddedSize()));
+				}
+			}
+		}
+
+		// rows from (inclusive) to (exclusive)
+		private void clear(int from, int to) {
+			for (int chunk = from >>> CHUNK_BITS; chunk < chunks.length; chunk++) {
+				String[] strings = chunks[chunk];
+				if (strings == null) {
+					continue;
+				}
+				long first = (long) chunk << CHUNK_BITS;
+				if (first >= to) {
+					break;
+				}
+				int start = (int) Math.max(from - first, 0);
+				int end = (int) Math.min(to - first, CHUNK_SIZE);
+				Arrays.fill(strings, start, end, null);
+			}
+		}
+	}
+}
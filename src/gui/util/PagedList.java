@@ -0,0 +1,243 @@
+package gui.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import db.DbExecutor;
+import javafx.collections.ObservableListBase;
+import javafx.concurrent.Task;
+import javafx.scene.control.Alert.AlertType;
+
+/*
+ * Read-only list backing a TableView that only keeps a window of pages in memory.
+ * get() returns null for rows whose page is not loaded yet and schedules the load
+ * on a db worker; the rows are refreshed once the page arrives.
+ * Pages are fetched with keyset pagination, so the last row of page n-1 is needed
+ * to load page n. Those boundary rows are kept even after a page is evicted. A page whose
+ * boundary is unknown, after a jump down the table, first reads it with one positioned query.
+ * A page next to one still loading waits for it and seeks from its last row.
+ */
+public class PagedList<T> extends ObservableListBase<T> {
+
+	public interface PageSource<T> {
+		int count();
+
+		// rows following 'after' in the source order, or the first rows when 'after' is null
+		List<T> fetchPage(T after, int pageSize);
+
+		// the key of the row at the index in the source order, or null past the end
+		T keyAt(int index);
+
+		// what is kept of a page's last row as the key for the next page; rows that are views
+		// into their page should be copied, or the boundary keeps the evicted page alive
+		default T keyOf(T row) {
+			return row;
+		}
+	}
+
+	private final PageSource<T> source;
+	private final int pageSize;
+	private final int maxPages;
+	private int size;
+
+	private final Map<Integer, List<T>> pages = new HashMap<>();
+	private final Map<Integer, T> lastOfPage = new HashMap<>();
+	private final Set<Integer> loading = new HashSet<>();
+	// pages waiting for the page before them to load, to seek from its last row
+	private final Set<Integer> deferred = new HashSet<>();
+	// one alert until a page loads again, not one per page the table asks for
+	private boolean failureShown;
+	private int currentPage;
+	// bumped when rows are removed, so pages fetched before that are dropped
+	private int generation;
+
+	private PagedList(PageSource<T> source, int pageSize, int maxPages, int size) {
+		this.source = source;
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+		this.size = size;
+	}
+
+	// blocking: counts the rows and fetches the first page, so call it off the FX thread
+	public static <T> PagedList<T> open(PageSource<T> source, int pageSize, int maxPages) {
+		PagedList<T> list = new PagedList<>(source, pageSize, Math.max(maxPages, 2), source.count());
+		if (list.size > 0) {
+			list.store(0, source.fetchPage(null, pageSize));
+		}
+		return list;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int page = index / pageSize;
+		currentPage = page;
+
+		List<T> rows = pages.get(page);
+		if (rows == null) {
+			requestPage(page);
+			return null;
+		}
+		int offset = index % pageSize;
+		return offset < rows.size() ? rows.get(offset) : null;
+	}
+
+	private void requestPage(int page) {
+		if (loading.contains(page) || deferred.contains(page)) {
+			return;
+		}
+		if (loading.contains(page - 1)) {
+			deferred.add(page);
+			return;
+		}
+		loading.add(page);
+
+		T after = page == 0 ? null : lastOfPage.get(page - 1);
+		boolean seek = page > 0 && after == null;
+		int fetchGeneration = generation;
+
+		Task<Fetched<T>> task = new Task<Fetched<T>>() {
+			@Override
+			protected Fetched<T> call() {
+				T key = seek ? source.keyAt(page * pageSize - 1) : after;
+				if (key == null && page > 0) {
+					// the rows shrank since they were counted
+					return new Fetched<>(null, new ArrayList<>());
+				}
+				return new Fetched<>(seek ? key : null, source.fetchPage(key, pageSize));
+			}
+		};
+
+		task.setOnSucceeded(event -> {
+			loading.remove(page);
+			failureShown = false;
+			if (fetchGeneration != generation) {
+				// rows shifted while loading; ask the table to read them again
+				deferred.remove(page + 1);
+				fireUpdated(page);
+				return;
+			}
+			Fetched<T> fetched = task.getValue();
+			if (fetched.boundary != null) {
+				lastOfPage.put(page - 1, source.keyOf(fetched.boundary));
+			}
+			store(page, fetched.rows);
+			evictFarPages();
+			fireUpdated(page);
+			StartupMetrics.dataShown();
+			if (deferred.remove(page + 1)) {
+				requestPage(page + 1);
+			}
+		});
+
+		task.setOnFailed(event -> {
+			loading.remove(page);
+			deferred.remove(page + 1);
+			// the rows stay empty; the table asks for them again when they are next shown
+			if (!failureShown) {
+				failureShown = true;
+				Alerts.showAlert("Error loading data", null, task.getException().getMessage(), AlertType.ERROR);
+			}
+		});
+
+		DbExecutor.execute(task);
+	}
+
+	// swaps a loaded row for its new version (matched with equals), in place and without a query;
+	// the row keeps its position until the list is reloaded even if its sort key changed
+	public boolean updateRow(T row) {
+		for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+			List<T> rows = entry.getValue();
+			int offset = rows.indexOf(row);
+			if (offset >= 0) {
+				// the page boundary stays the old row, it is the key the next page was fetched after
+				T old = rows.set(offset, row);
+				int index = entry.getKey() * pageSize + offset;
+				beginChange();
+				nextSet(index, old);
+				endChange();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// removes a loaded row. Rows before its page are kept; its page and the following ones
+	// are fetched again when shown, starting after the boundary of the previous page
+	public boolean removeRow(T row) {
+		for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+			int page = entry.getKey();
+			int offset = entry.getValue().indexOf(row);
+			if (offset >= 0) {
+				T removed = entry.getValue().get(offset);
+				pages.keySet().removeIf(p -> p >= page);
+				lastOfPage.keySet().removeIf(p -> p >= page);
+				generation++;
+				size--;
+				beginChange();
+				nextRemove(page * pageSize + offset, removed);
+				endChange();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void store(int page, List<T> rows) {
+		if (!rows.isEmpty()) {
+			lastOfPage.put(page, source.keyOf(rows.get(rows.size() - 1)));
+		}
+		pages.put(page, rows);
+	}
+
+	private void evictFarPages() {
+		while (pages.size() > maxPages) {
+			int farthest = -1;
+			for (Integer p : pages.keySet()) {
+				if (farthest < 0 || Math.abs(p - currentPage) > Math.abs(farthest - currentPage)) {
+					farthest = p;
+				}
+			}
+			pages.remove(farthest);
+		}
+	}
+
+	private void fireUpdated(int page) {
+		int from = page * pageSize;
+		int to = Math.min(from + pageSize, size);
+		if (from >= to) {
+			return;
+		}
+		beginChange();
+		for (int i = from; i < to; i++) {
+			nextUpdate(i);
+		}
+		endChange();
+	}
+
+	public int getLoadedPageCount() {
+		return pages.size();
+	}
+
+	private static class Fetched<T> {
+		// the last row of the previous page, when it had to be looked up
+		final T boundary;
+		final List<T> rows;
+
+		Fetched(T boundary, List<T> rows) {
+			this.boundary = boundary;
+			this.rows = rows;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package gui.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javafx.scene.Scene;
+
+/*
+ * Logs how long after JVM start the main window drew its first frame and the first
+ * list view showed data, once each per run.
+ */
+public class StartupMetrics {
+
+	private static final Logger LOG = Logger.getLogger(StartupMetrics.class.getName());
+
+	private static final AtomicBoolean frameReported = new AtomicBoolean();
+	private static final AtomicBoolean dataReported = new AtomicBoolean();
+
+	private static volatile long firstFrameMillis = -1;
+	private static volatile long firstDataMillis = -1;
+
+	// reports after the first pulse that lays out the scene, i.e. the first frame it renders
+	public static void watchFirstFrame(Scene scene) {
+		Runnable[] listener = new Runnable[1];
+		listener[0] = () -> {
+			scene.removePostLayoutPulseListener(listener[0]);
+			if (frameReported.compareAndSet(false, true)) {
+				firstFrameMillis = sinceStart();
+				LOG.info("Startup: first frame after " + firstFrameMillis + " ms");
+			}
+		};
+		scene.addPostLayoutPulseListener(listener[0]);
+	}
+
+	public static void dataShown() {
+		if (dataReported.compareAndSet(false, true)) {
+			firstDataMillis = sinceStart();
+			LOG.info("Startup: first data after " + firstDataMillis + " ms");
+		}
+	}
+
+	// -1 until reported
+	public static long getFirstFrameMillis() {
+		return firstFrameMillis;
+	}
+
+	public static long getFirstDataMillis() {
+		return firstDataMillis;
+	}
+
+	private static long sinceStart() {
+		return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+	}
+}
@@ -0,0 +1,88 @@
+package gui.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+import db.CancellationToken;
+import db.DbExecutor;
+import javafx.concurrent.Task;
+import javafx.scene.Node;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableView;
+
+public class TableLoader<T> {
+
+	private final TableView<T> tableView;
+	private final Node emptyPlaceholder;
+	private Task<?> currentTask;
+	private CancellationToken currentToken;
+
+	public TableLoader(TableView<T> tableView) {
+		this.tableView = tableView;
+		this.emptyPlaceholder = tableView.getPlaceholder();
+	}
+
+	// runs the query on a db worker thread and hands the result back on the FX thread;
+	// a load started while another is running supersedes it, and its query is cancelled on the server
+	public <L extends List<T>> void load(Callable<L> query, Consumer<L> onLoaded) {
+		cancel();
+
+		CancellationToken token = new CancellationToken();
+		Task<L> task = new Task<L>() {
+			@Override
+			protected L call() throws Exception {
+				token.bind();
+				try {
+					return query.call();
+				}
+				finally {
+					token.unbind();
+				}
+			}
+		};
+
+		task.setOnSucceeded(event -> {
+			if (task == currentTask) {
+				finish();
+				onLoaded.accept(task.getValue());
+				StartupMetrics.dataShown();
+			}
+		});
+
+		task.setOnFailed(event -> {
+			if (task == currentTask) {
+				finish();
+				Alerts.showAlert("Error loading data", null, task.getException().getMessage(), AlertType.ERROR);
+			}
+		});
+
+		currentTask = task;
+		currentToken = token;
+
+		ProgressIndicator progress = new ProgressIndicator();
+		progress.progressProperty().bind(task.progressProperty());
+		tableView.setPlaceholder(progress);
+
+		DbExecutor.execute(task);
+	}
+
+	public void cancel() {
+		if (currentTask != null) {
+			currentTask.cancel();
+			currentToken.cancel();
+			finish();
+		}
+	}
+
+	public boolean isLoading() {
+		return currentTask != null;
+	}
+
+	private void finish() {
+		currentTask = null;
+		currentToken = null;
+		tableView.setPlaceholder(emptyPlaceholder);
+	}
+}
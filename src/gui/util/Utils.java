@@ -1,12 +1,11 @@
 package gui.util;
 
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.scene.Node;
 import javafx.scene.control.DatePicker;
@@ -16,6 +15,16 @@ import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
 public class Utils {
+	// runs the action right away on the FX thread, or posts it there from any other thread
+	public static void runOnFxThread(Runnable action) {
+		if (Platform.isFxApplicationThread()) {
+			action.run();
+		}
+		else {
+			Platform.runLater(action);
+		}
+	}
+
 	public static Stage currentStage(ActionEvent event) {
 		return (Stage) ((Node) event.getSource()).getScene().getWindow();
 	}
@@ -36,47 +45,21 @@ public class Utils {
 		}
 	}
 	
+	// the cells of a column share one memo of display strings by row
 	public static <T> void formatTableColumnDate(TableColumn<T, Date> tableColumn, String format) {
-		tableColumn.setCellFactory(column -> {
-			TableCell<T, Date> cell = new TableCell<T, Date>() {
-				private SimpleDateFormat sdf = new SimpleDateFormat(format);
-				@Override
-				protected void updateItem(Date item, boolean empty) {
-					super.updateItem(item, empty);
-					if (empty) {
-						setText(null);
-					} else {
-						setText(sdf.format(item));
-					}
-				}
-			};
-			return cell;
-		});
+		Formats.RowMemo<Date> memo = new Formats.RowMemo<>(date -> Formats.formatDate(date, format));
+		tableColumn.setCellFactory(column -> new MemoCell<>(memo));
 	}
 
 	public static <T> void formatTableColumnDouble(TableColumn<T, Double> tableColumn, Locale local) {
-		tableColumn.setCellFactory(column -> {
-			TableCell<T, Double> cell = new TableCell<T, Double>() {
-				@Override
-				protected void updateItem(Double item, boolean empty) {
-					super.updateItem(item, empty);
-					if (empty) {
-						setText(null);
-					} else {
-						Locale.setDefault(local);
-						NumberFormat nFormat = NumberFormat.getCurrencyInstance(local);
-						setText(String.format(nFormat.format(item)));
-					}
-				}
-			};
-			return cell;
-		});
+		Formats.RowMemo<Double> memo = new Formats.RowMemo<>(value -> Formats.formatCurrency(value, local));
+		tableColumn.setCellFactory(column -> new MemoCell<>(memo));
 	}
 
 	public static void formatDatePicker(DatePicker datePicker, String format) {
 		datePicker.setConverter(new StringConverter<LocalDate>() {
 
-			DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(format);
+			DateTimeFormatter dateFormatter = Formats.dateFormatter(format);
 			{
 				datePicker.setPromptText(format.toLowerCase());
 			}
@@ -101,4 +84,22 @@ public class Utils {
 
 		});
 	}
+
+	private static class MemoCell<T, V> extends TableCell<T, V> {
+		private final Formats.RowMemo<V> memo;
+
+		MemoCell(Formats.RowMemo<V> memo) {
+			this.memo = memo;
+		}
+
+		@Override
+		protected void updateItem(V item, boolean empty) {
+			super.updateItem(item, empty);
+			if (empty || item == null) {
+				setText(null);
+			} else {
+				setText(memo.get(getTableView().getItems(), getIndex(), item));
+			}
+		}
+	}
 }
@@ -0,0 +1,93 @@
+package gui.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.fxml.FXMLLoader;
+
+/*
+ * Views parsed ahead of time on a background thread. A parsed view is a tree of live nodes
+ * and can be shown only once, so each view keeps one spare copy: take() hands it out and
+ * starts parsing the next one, or parses a view itself while the spare is not ready yet.
+ * The spare is built off the FX thread, so its controller's initialize() must leave anything
+ * shared with the FX thread to Platform.runLater.
+ */
+public class ViewCache {
+
+	private static final Logger LOG = Logger.getLogger(ViewCache.class.getName());
+
+	private static final Map<String, Future<FXMLLoader>> spares = new ConcurrentHashMap<>();
+	private static ExecutorService preloader = null;
+
+	public static synchronized void preload(String... absoluteNames) {
+		for (String absoluteName : absoluteNames) {
+			spares.computeIfAbsent(absoluteName, name -> getPreloader().submit(() -> load(name)));
+		}
+	}
+
+	public static FXMLLoader take(String absoluteName) throws IOException {
+		return take(absoluteName, true);
+	}
+
+	// a loaded view: the spare when it is ready, else a fresh one parsed here, which never waits for a spare still
+	// being parsed; replaceSpare is false for views that are kept and reused, which never need another
+	public static FXMLLoader take(String absoluteName, boolean replaceSpare) throws IOException {
+		FXMLLoader loader = null;
+		Future<FXMLLoader> spare = spares.get(absoluteName);
+		if (spare != null && spare.isDone() && spares.remove(absoluteName, spare)) {
+			try {
+				loader = spare.get();
+			}
+			catch (ExecutionException e) {
+				LOG.log(Level.WARNING, "Preloading " + absoluteName + " failed", e.getCause());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (replaceSpare) {
+				preload(absoluteName);
+			}
+		}
+		else if (spare != null && !replaceSpare && spares.remove(absoluteName, spare)) {
+			// a kept view is taken once, its spare would never be used
+			spare.cancel(false);
+		}
+		// a spare still being parsed stays for the next take
+		if (loader == null) {
+			loader = load(absoluteName);
+		}
+		return loader;
+	}
+
+	public static synchronized void shutdown() {
+		if (preloader != null) {
+			preloader.shutdownNow();
+			preloader = null;
+		}
+		spares.clear();
+	}
+
+	private static FXMLLoader load(String absoluteName) throws IOException {
+		FXMLLoader loader = new FXMLLoader(ViewCache.class.getResource(absoluteName));
+		loader.load();
+		return loader;
+	}
+
+	private static synchronized ExecutorService getPreloader() {
+		if (preloader == null) {
+			preloader = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "view-preloader");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return preloader;
+	}
+}
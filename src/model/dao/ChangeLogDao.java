@@ -0,0 +1,15 @@
+package model.dao;
+
+import java.util.List;
+
+public interface ChangeLogDao {
+
+	// 0 when the log is empty
+	long findLatestId();
+	// entries with an Id greater than afterId, plus those with an Id greater than recheckAfterId written in
+	// the last recheckMillis, oldest first. Ids are handed out on insert, not on commit, so an entry can
+	// become visible after one with a higher Id was already read
+	List<ChangeLogEntry> findAfter(long afterId, long recheckAfterId, long recheckMillis, int limit);
+	// entries written more than retentionMillis ago, on the database clock like ChangedAt
+	int deleteOlderThan(long retentionMillis);
+}
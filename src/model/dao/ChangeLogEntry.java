@@ -0,0 +1,50 @@
+package model.dao;
+
+// one row of change_log: which row of which table was inserted, updated or deleted
+public class ChangeLogEntry {
+
+	public enum Operation {
+		INSERT, UPDATE, DELETE;
+
+		public static Operation fromCode(String code) {
+			switch (code) {
+			case "I":
+				return INSERT;
+			case "U":
+				return UPDATE;
+			case "D":
+				return DELETE;
+			default:
+				throw new IllegalArgumentException("Unknown change operation: " + code);
+			}
+		}
+	}
+
+	private final long id;
+	private final String tableName;
+	private final int rowId;
+	private final Operation operation;
+
+	public ChangeLogEntry(long id, String tableName, int rowId, Operation operation) {
+		this.id = id;
+		this.tableName = tableName;
+		this.rowId = rowId;
+		this.operation = operation;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public int getRowId() {
+		return rowId;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+}
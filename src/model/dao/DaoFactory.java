@@ -1,16 +1,128 @@
 package model.dao;
 
+import java.util.Properties;
+
 import db.DB;
+import db.DbException;
+import db.QueryMetrics;
+import db.UnitOfWork;
+import model.dao.impl.ChangeLogDaoJDBC;
+import model.dao.impl.ChangeLogDaoMemory;
+import model.dao.impl.DepartmentCache;
 import model.dao.impl.DepartmentDaoJDBC;
+import model.dao.impl.DepartmentDaoMemory;
+import model.dao.impl.MemoryDatabase;
+import model.dao.impl.ReportDaoJDBC;
+import model.dao.impl.ReportDaoMemory;
+import model.dao.impl.SellerCache;
 import model.dao.impl.SellerDaoJDBC;
+import model.dao.impl.SellerDaoMemory;
 
+/*
+ * dao.backend picks the DAOs: jdbc, the default, for the database in dburl, or memory for tables
+ * kept in this process, seeded with the sample rows and memory.seedSellers generated sellers.
+ * The memory backend needs no database and loses its data when the application exits.
+ */
 public class DaoFactory {
 
+	public static final String JDBC = "jdbc";
+	public static final String MEMORY = "memory";
+
+	private static String backend = null;
+	private static MemoryDatabase memoryDatabase = null;
+	private static DepartmentCache departmentCache = null;
+	private static SellerCache sellerCache = null;
+
 	public static SellerDao createSellerDao() {
-		return new SellerDaoJDBC(DB.getConnection());
+		if (isMemory()) {
+			return instrument(SellerDao.class, new SellerDaoMemory(getMemoryDatabase()));
+		}
+		return instrument(SellerDao.class,
+				new SellerDaoJDBC(DB.getConnectionPool(), getBatchSize(), createDepartmentDao(), getSellerCache()));
 	}
 	
 	public static DepartmentDao createDepartmentDao() {
-		return new DepartmentDaoJDBC(DB.getConnection());
+		if (isMemory()) {
+			return instrument(DepartmentDao.class, new DepartmentDaoMemory(getMemoryDatabase()));
+		}
+		return instrument(DepartmentDao.class,
+				new DepartmentDaoJDBC(DB.getConnectionPool(), getBatchSize(), getDepartmentCache()));
+	}
+	
+	public static ChangeLogDao createChangeLogDao() {
+		if (isMemory()) {
+			return instrument(ChangeLogDao.class, new ChangeLogDaoMemory());
+		}
+		return instrument(ChangeLogDao.class, new ChangeLogDaoJDBC(DB.getConnectionPool()));
+	}
+	
+	public static ReportDao createReportDao() {
+		if (isMemory()) {
+			return instrument(ReportDao.class, new ReportDaoMemory(getMemoryDatabase()));
+		}
+		return instrument(ReportDao.class, new ReportDaoJDBC(DB.getConnectionPool()));
+	}
+	
+	// one transaction over several DAO calls, whichever the backend
+	public static UnitOfWork beginUnitOfWork() {
+		return isMemory() ? UnitOfWork.beginDetached() : DB.beginUnitOfWork();
+	}
+	
+	public static synchronized String getBackend() {
+		if (backend == null) {
+			String value = DB.loadProperties().getProperty("dao.backend", JDBC).trim().toLowerCase();
+			if (!value.equals(JDBC) && !value.equals(MEMORY)) {
+				throw new DbException("Unknown dao.backend: " + value);
+			}
+			backend = value;
+		}
+		return backend;
+	}
+	
+	private static boolean isMemory() {
+		return getBackend().equals(MEMORY);
+	}
+	
+	private static synchronized MemoryDatabase getMemoryDatabase() {
+		if (memoryDatabase == null) {
+			memoryDatabase = MemoryDatabase.withSampleData(
+					Math.max(0, DB.intProperty(DB.loadProperties(), "memory.seedSellers", 0)));
+		}
+		return memoryDatabase;
+	}
+	
+	private static <T> T instrument(Class<T> type, T dao) {
+		QueryMetrics metrics = DB.getQueryMetrics();
+		return metrics == null ? dao : metrics.instrument(type, dao);
+	}
+	
+	public static synchronized DepartmentCache getDepartmentCache() {
+		if (departmentCache == null) {
+			Properties props = DB.loadProperties();
+			departmentCache = new DepartmentCache(DB.intProperty(props, "cache.department.maxSize", 1000),
+					DB.longProperty(props, "cache.department.ttlMillis", 300000));
+		}
+		return departmentCache;
+	}
+	
+	// null when cache.seller.maxSize is 0
+	public static synchronized SellerCache getSellerCache() {
+		if (sellerCache == null) {
+			Properties props = DB.loadProperties();
+			int maxSize = DB.intProperty(props, "cache.seller.maxSize", 10000);
+			if (maxSize <= 0) {
+				return null;
+			}
+			sellerCache = new SellerCache(maxSize, DB.longProperty(props, "cache.seller.ttlMillis", 300000));
+			QueryMetrics metrics = DB.getQueryMetrics();
+			if (metrics != null) {
+				metrics.registerCache("seller", sellerCache);
+			}
+		}
+		return sellerCache;
+	}
+	
+	public static int getBatchSize() {
+		return Math.max(1, DB.intProperty(DB.loadProperties(), "dao.batchSize", 500));
 	}
 }
@@ -9,6 +9,10 @@ public interface DepartmentDao {
 	void insert(Department obj);
 	void update(Department obj);
 	void deleteById(Integer id);
+	// batched, one transaction per chunk of the configured batch size
+	void insertAll(List<Department> list);
+	void updateAll(List<Department> list);
+	void deleteAllById(List<Integer> ids);
 	Department findById(Integer id);
 	List<Department> findAll();
 }
@@ -0,0 +1,14 @@
+package model.dao;
+
+import java.util.List;
+
+import model.entities.AgeBand;
+import model.entities.DepartmentPayroll;
+
+public interface ReportDao {
+
+	// every department, including those without sellers, in name order
+	List<DepartmentPayroll> findPayrollByDepartment();
+	// bands of bandYears years of age that have sellers, youngest first
+	List<AgeBand> findAgeBands(int bandYears);
+}
@@ -0,0 +1,83 @@
+package model.dao;
+
+import java.util.Date;
+
+// filters for seller queries; null fields are not applied
+public class SellerCriteria {
+
+	private String namePrefix;
+	private String emailPrefix;
+	private Integer departmentId;
+	private Double minBaseSalary;
+	private Double maxBaseSalary;
+	private Date bornFrom;
+	private Date bornTo;
+
+	public String getNamePrefix() {
+		return namePrefix;
+	}
+
+	public void setNamePrefix(String namePrefix) {
+		this.namePrefix = namePrefix;
+	}
+
+	public String getEmailPrefix() {
+		return emailPrefix;
+	}
+
+	public void setEmailPrefix(String emailPrefix) {
+		this.emailPrefix = emailPrefix;
+	}
+
+	public Integer getDepartmentId() {
+		return departmentId;
+	}
+
+	public void setDepartmentId(Integer departmentId) {
+		this.departmentId = departmentId;
+	}
+
+	public Double getMinBaseSalary() {
+		return minBaseSalary;
+	}
+
+	public void setMinBaseSalary(Double minBaseSalary) {
+		this.minBaseSalary = minBaseSalary;
+	}
+
+	public Double getMaxBaseSalary() {
+		return maxBaseSalary;
+	}
+
+	public void setMaxBaseSalary(Double maxBaseSalary) {
+		this.maxBaseSalary = maxBaseSalary;
+	}
+
+	public Date getBornFrom() {
+		return bornFrom;
+	}
+
+	public void setBornFrom(Date bornFrom) {
+		this.bornFrom = bornFrom;
+	}
+
+	public Date getBornTo() {
+		return bornTo;
+	}
+
+	public void setBornTo(Date bornTo) {
+		this.bornTo = bornTo;
+	}
+
+	public boolean isEmpty() {
+		return namePrefix == null && emailPrefix == null && departmentId == null && minBaseSalary == null
+				&& maxBaseSalary == null && bornFrom == null && bornTo == null;
+	}
+
+	@Override
+	public String toString() {
+		return "SellerCriteria [namePrefix=" + namePrefix + ", emailPrefix=" + emailPrefix + ", departmentId="
+				+ departmentId + ", minBaseSalary=" + minBaseSalary + ", maxBaseSalary=" + maxBaseSalary
+				+ ", bornFrom=" + bornFrom + ", bornTo=" + bornTo + "]";
+	}
+}
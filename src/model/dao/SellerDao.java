@@ -1,6 +1,8 @@
 package model.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
 
 import model.entities.Department;
 import model.entities.Seller;
@@ -10,7 +12,27 @@ public interface SellerDao {
 	void insert(Seller obj);
 	void update(Seller obj);
 	void deleteById(Integer id);
+	// batched, one transaction per chunk of the configured batch size
+	void insertAll(List<Seller> list);
+	void updateAll(List<Seller> list);
+	void deleteAllById(List<Integer> ids);
+	// moves every seller of one department to another, returns how many were moved
+	int reassignDepartment(Integer fromDepartmentId, Integer toDepartmentId);
 	Seller findById(Integer id);
+	// emails are not unique; every seller with the email, in (Name, Id) order
+	List<Seller> findByEmail(String email);
+	// the list queries return a SellerTable: columns of primitives with rows as views
 	List<Seller> findAll();
 	List<Seller> findByDepartment(Department department);
+	// ids that no longer exist are left out
+	List<Seller> findByIds(Collection<Integer> ids);
+	// keyset pagination ordered by (Name, Id): the page after the given key, or the first page when it is null;
+	// a null criteria matches every seller
+	List<Seller> findPage(SellerCriteria criteria, String afterName, Integer afterId, int pageSize);
+	// the (Name, Id) key of the row at offset in that order, or null past the end: one positioned query
+	// to seek from when jumping far into the pages; only Name and Id are set
+	Seller findKeyAt(SellerCriteria criteria, int offset);
+	int count(SellerCriteria criteria);
+	// streams every seller in Name order without materializing them; stops when the consumer returns false
+	long streamAll(Predicate<Seller> consumer);
 }
@@ -0,0 +1,277 @@
+package model.dao;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * Sellers stored column by column in primitive arrays, filled by the DAO straight from the ResultSet.
+ * A row costs its two strings plus 36 bytes, instead of a Seller with a boxed id and salary and a Date.
+ * Each department is held once and rows keep only its id.
+ * get() returns a view of the row that reads the columns, and setting a value on it
+ * writes to the columns. A row's view is created the first time it is asked for and then reused,
+ * so repainting a table allocates nothing; it holds the whole table, so keep the table, not the views.
+ */
+public class SellerTable extends AbstractList<Seller> implements RandomAccess {
+
+	private int size;
+	private int[] ids;
+	private String[] names;
+	private String[] emails;
+	private long[] birthDates;
+	private double[] baseSalaries;
+	private int[] departmentIds;
+	private int[] versions;
+	// created on the first get()
+	private Row[] views;
+	private final Map<Integer, Department> departments = new HashMap<>();
+
+	public SellerTable(int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 1);
+		ids = new int[capacity];
+		names = new String[capacity];
+		emails = new String[capacity];
+		birthDates = new long[capacity];
+		baseSalaries = new double[capacity];
+		departmentIds = new int[capacity];
+		versions = new int[capacity];
+	}
+
+	public void add(int id, String name, String email, long birthDate, double baseSalary, Department department,
+			int version) {
+		if (size == ids.length) {
+			grow();
+		}
+		ids[size] = id;
+		names[size] = name;
+		emails[size] = email;
+		birthDates[size] = birthDate;
+		baseSalaries[size] = baseSalary;
+		departmentIds[size] = putDepartment(department);
+		versions[size] = version;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public boolean add(Seller seller) {
+		checkComplete(seller);
+		add(seller.getId(), seller.getName(), seller.getEmail(), seller.getBirthDate().getTime(),
+				seller.getBaseSalary(), seller.getDepartment(), seller.getVersion());
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Seller get(int index) {
+		checkIndex(index);
+		if (views == null) {
+			views = new Row[ids.length];
+		}
+		Row view = views[index];
+		if (view == null) {
+			view = new Row(index);
+			views[index] = view;
+		}
+		return view;
+	}
+
+	// copies the seller into the row and returns the previous values as a detached Seller
+	@Override
+	public Seller set(int index, Seller seller) {
+		checkIndex(index);
+		checkComplete(seller);
+		Seller old = toSeller(index);
+		ids[index] = seller.getId();
+		names[index] = seller.getName();
+		emails[index] = seller.getEmail();
+		birthDates[index] = seller.getBirthDate().getTime();
+		baseSalaries[index] = seller.getBaseSalary();
+		departmentIds[index] = putDepartment(seller.getDepartment());
+		versions[index] = seller.getVersion();
+		return old;
+	}
+
+	// a plain Seller that no longer depends on the table
+	public Seller toSeller(int index) {
+		checkIndex(index);
+		Seller seller = new Seller(ids[index], names[index], emails[index], new Date(birthDates[index]),
+				baseSalaries[index], getDepartment(index));
+		seller.setVersion(versions[index]);
+		return seller;
+	}
+
+	public int getId(int index) {
+		checkIndex(index);
+		return ids[index];
+	}
+
+	public String getName(int index) {
+		checkIndex(index);
+		return names[index];
+	}
+
+	public String getEmail(int index) {
+		checkIndex(index);
+		return emails[index];
+	}
+
+	// epoch millis
+	public long getBirthDate(int index) {
+		checkIndex(index);
+		return birthDates[index];
+	}
+
+	public double getBaseSalary(int index) {
+		checkIndex(index);
+		return baseSalaries[index];
+	}
+
+	public int getDepartmentId(int index) {
+		checkIndex(index);
+		return departmentIds[index];
+	}
+
+	public Department getDepartment(int index) {
+		checkIndex(index);
+		return departments.get(departmentIds[index]);
+	}
+
+	public int getVersion(int index) {
+		checkIndex(index);
+		return versions[index];
+	}
+
+	public void trimToSize() {
+		if (size < ids.length) {
+			resize(size);
+		}
+	}
+
+	private int putDepartment(Department department) {
+		// the latest instance wins, so a renamed department shows on every row of it
+		departments.put(department.getId(), department);
+		return department.getId();
+	}
+
+	private void grow() {
+		resize(ids.length + (ids.length >> 1) + 1);
+	}
+
+	private void resize(int capacity) {
+		ids = Arrays.copyOf(ids, capacity);
+		names = Arrays.copyOf(names, capacity);
+		emails = Arrays.copyOf(emails, capacity);
+		birthDates = Arrays.copyOf(birthDates, capacity);
+		baseSalaries = Arrays.copyOf(baseSalaries, capacity);
+		departmentIds = Arrays.copyOf(departmentIds, capacity);
+		versions = Arrays.copyOf(versions, capacity);
+		if (views != null) {
+			views = Arrays.copyOf(views, capacity);
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	// the columns mirror the NOT NULL columns of the seller table
+	private static void checkComplete(Seller seller) {
+		if (seller.getId() == null || seller.getBirthDate() == null || seller.getBaseSalary() == null
+				|| seller.getDepartment() == null || seller.getVersion() == null) {
+			throw new IllegalArgumentException("Only saved, complete sellers can be stored: " + seller);
+		}
+	}
+
+	private class Row extends Seller {
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		Row(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Integer getId() {
+			return ids[index];
+		}
+
+		@Override
+		public void setId(Integer id) {
+			ids[index] = id;
+		}
+
+		@Override
+		public String getName() {
+			return names[index];
+		}
+
+		@Override
+		public void setName(String name) {
+			names[index] = name;
+		}
+
+		@Override
+		public String getEmail() {
+			return emails[index];
+		}
+
+		@Override
+		public void setEmail(String email) {
+			emails[index] = email;
+		}
+
+		@Override
+		public Date getBirthDate() {
+			return new Date(birthDates[index]);
+		}
+
+		@Override
+		public void setBirthDate(Date birthDate) {
+			birthDates[index] = birthDate.getTime();
+		}
+
+		@Override
+		public Double getBaseSalary() {
+			return baseSalaries[index];
+		}
+
+		@Override
+		public void setBaseSalary(Double baseSalary) {
+			baseSalaries[index] = baseSalary;
+		}
+
+		@Override
+		public Department getDepartment() {
+			return departments.get(departmentIds[index]);
+		}
+
+		@Override
+		public void setDepartment(Department department) {
+			departmentIds[index] = putDepartment(department);
+		}
+
+		@Override
+		public Integer getVersion() {
+			return versions[index];
+		}
+
+		@Override
+		public void setVersion(Integer version) {
+			versions[index] = version;
+		}
+	}
+}
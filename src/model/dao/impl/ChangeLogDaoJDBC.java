@@ -0,0 +1,100 @@
+package model.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import db.ConnectionPool;
+import db.DB;
+import db.DbException;
+import model.dao.ChangeLogDao;
+import model.dao.ChangeLogEntry;
+
+public class ChangeLogDaoJDBC implements ChangeLogDao {
+
+	private ConnectionPool pool;
+
+	public ChangeLogDaoJDBC(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public long findLatestId() {
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT MAX(Id) FROM change_log");
+			rs = st.executeQuery();
+			rs.next();
+			return rs.getLong(1);
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public List<ChangeLogEntry> findAfter(long afterId, long recheckAfterId, long recheckMillis, int limit) {
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			// the recheck window is measured on the database clock, like ChangedAt
+			st = conn.prepareStatement(
+					"SELECT Id, TableName, RowId, Operation FROM change_log WHERE Id > ? "
+					+ "AND (Id > ? OR ChangedAt >= TIMESTAMPADD(MICROSECOND, ?, CURRENT_TIMESTAMP(3))) "
+					+ "ORDER BY Id LIMIT ?");
+			st.setLong(1, Math.min(recheckAfterId, afterId));
+			st.setLong(2, afterId);
+			st.setLong(3, -recheckMillis * 1000);
+			st.setInt(4, limit);
+			rs = st.executeQuery();
+
+			List<ChangeLogEntry> list = new ArrayList<>();
+			while (rs.next()) {
+				list.add(new ChangeLogEntry(rs.getLong("Id"), rs.getString("TableName"), rs.getInt("RowId"),
+						ChangeLogEntry.Operation.fromCode(rs.getString("Operation"))));
+			}
+			return list;
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public int deleteOlderThan(long retentionMillis) {
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement(
+					"DELETE FROM change_log WHERE ChangedAt < TIMESTAMPADD(MICROSECOND, ?, CURRENT_TIMESTAMP(3))");
+			st.setLong(1, -retentionMillis * 1000);
+			return st.executeUpdate();
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package model.dao.impl;
+
+import java.util.Collections;
+import java.util.List;
+
+import model.dao.ChangeLogDao;
+import model.dao.ChangeLogEntry;
+
+// the in-memory backend is private to this process, so there are never changes from other clients to report
+public class ChangeLogDaoMemory implements ChangeLogDao {
+
+	@Override
+	public long findLatestId() {
+		return 0;
+	}
+
+	@Override
+	public List<ChangeLogEntry> findAfter(long afterId, long recheckAfterId, long recheckMillis, int limit) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public int deleteOlderThan(long retentionMillis) {
+		return 0;
+	}
+}
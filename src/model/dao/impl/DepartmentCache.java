@@ -0,0 +1,125 @@
+package model.dao.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.entities.Department;
+
+/*
+ * Departments shared by every DAO: an LRU bounded by maxSize whose entries expire
+ * after ttlMillis, plus the full ordered list returned by findAll() while it fits.
+ * Writes go through DepartmentDaoJDBC, which invalidates the affected entries.
+ * Departments are copied in and out, so callers never share an instance through the cache.
+ * Rows are put with the generation() taken before they were read, and dropped if an
+ * invalidation happened in between, so a read that raced a write can't put back the old row.
+ */
+public class DepartmentCache {
+
+	private final int maxSize;
+	private final long ttlMillis;
+
+	private final Map<Integer, Entry> byId;
+	private List<Department> all;
+	private long allLoadedAt;
+	private long generation;
+
+	public DepartmentCache(int maxSize, long ttlMillis) {
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+		this.byId = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+				return size() > DepartmentCache.this.maxSize;
+			}
+		};
+	}
+
+	public synchronized Department get(Integer id) {
+		Entry entry = byId.get(id);
+		if (entry == null) {
+			return null;
+		}
+		if (isExpired(entry.loadedAt)) {
+			byId.remove(id);
+			return null;
+		}
+		return copyOf(entry.department);
+	}
+
+	// taken before reading the rows that are put
+	public synchronized long generation() {
+		return generation;
+	}
+
+	public synchronized void put(Department department, long readAt) {
+		if (readAt == generation) {
+			byId.put(department.getId(), new Entry(copyOf(department), System.currentTimeMillis()));
+		}
+	}
+
+	// null when the list is not cached, otherwise copies the caller may modify
+	public synchronized List<Department> getAll() {
+		if (all == null || isExpired(allLoadedAt)) {
+			all = null;
+			return null;
+		}
+		List<Department> list = new ArrayList<>(all.size());
+		for (Department department : all) {
+			list.add(copyOf(department));
+		}
+		return list;
+	}
+
+	public synchronized void putAll(List<Department> departments, long readAt) {
+		if (readAt != generation) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<Department> copies = new ArrayList<>(departments.size());
+		for (Department department : departments) {
+			Department copy = copyOf(department);
+			copies.add(copy);
+			byId.put(copy.getId(), new Entry(copy, now));
+		}
+		if (departments.size() <= maxSize) {
+			all = copies;
+			allLoadedAt = now;
+		}
+	}
+
+	public synchronized void invalidate(Integer id) {
+		generation++;
+		byId.remove(id);
+		all = null;
+	}
+
+	public synchronized void invalidateAll() {
+		generation++;
+		byId.clear();
+		all = null;
+	}
+
+	private boolean isExpired(long loadedAt) {
+		return System.currentTimeMillis() - loadedAt > ttlMillis;
+	}
+
+	private static Department copyOf(Department department) {
+		Department copy = new Department(department.getId(), department.getName());
+		copy.setVersion(department.getVersion());
+		return copy;
+	}
+
+	private static class Entry {
+		final Department department;
+		final long loadedAt;
+
+		Entry(Department department, long loadedAt) {
+			this.department = department;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
@@ -6,35 +6,69 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import db.ConnectionPool;
 import db.DB;
+import db.DbConflictException;
 import db.DbException;
 import db.DbIntegrityException;
+import db.UnitOfWork;
 import model.dao.DepartmentDao;
 import model.entities.Department;
 
 public class DepartmentDaoJDBC implements DepartmentDao {
 
-	private Connection conn;
+	private static final String UPDATE =
+		"UPDATE department " +
+		"SET Name = ?, Version = Version + 1 " +
+		"WHERE Id = ? AND Version = ?";
+
+	private ConnectionPool pool;
+	private int batchSize;
+	private DepartmentCache cache;
 	
-	public DepartmentDaoJDBC(Connection conn) {
-		this.conn = conn;
+	public DepartmentDaoJDBC(ConnectionPool pool, int batchSize, DepartmentCache cache) {
+		this.pool = pool;
+		this.batchSize = batchSize;
+		this.cache = cache;
 	}
 	
+	// null drops every entry. Inside a unit of work the entries are dropped again on rollback,
+	// since rows read back before then were never committed
+	private void invalidate(Integer id) {
+		if (id == null) {
+			cache.invalidateAll();
+		} else {
+			cache.invalidate(id);
+		}
+		UnitOfWork unit = pool.currentUnitOfWork();
+		if (unit != null) {
+			unit.onRollback(cache::invalidateAll);
+		}
+	}
+
 	@Override
 	public Department findById(Integer id) {
+		Department cached = cache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+		long readAt = cache.generation();
+		
+		Connection conn = null;
 		PreparedStatement st = null;
 		ResultSet rs = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement(
 				"SELECT * FROM department WHERE Id = ?");
 			st.setInt(1, id);
 			rs = st.executeQuery();
 			if (rs.next()) {
-				Department obj = new Department();
-				obj.setId(rs.getInt("Id"));
-				obj.setName(rs.getString("Name"));
+				Department obj = instantiateDepartment(rs);
+				cache.put(obj, readAt);
 				return obj;
 			}
 			return null;
@@ -43,16 +77,25 @@ public class DepartmentDaoJDBC implements DepartmentDao {
 			throw new DbException(e.getMessage());
 		}
 		finally {
-			DB.closeStatement(st);
 			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
 	@Override
 	public List<Department> findAll() {
+		List<Department> cached = cache.getAll();
+		if (cached != null) {
+			return cached;
+		}
+		long readAt = cache.generation();
+		
+		Connection conn = null;
 		PreparedStatement st = null;
 		ResultSet rs = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement(
 				"SELECT * FROM department ORDER BY Name");
 			rs = st.executeQuery();
@@ -60,26 +103,28 @@ public class DepartmentDaoJDBC implements DepartmentDao {
 			List<Department> list = new ArrayList<>();
 
 			while (rs.next()) {
-				Department obj = new Department();
-				obj.setId(rs.getInt("Id"));
-				obj.setName(rs.getString("Name"));
+				Department obj = instantiateDepartment(rs);
 				list.add(obj);
 			}
+			cache.putAll(list, readAt);
 			return list;
 		}
 		catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		}
 		finally {
-			DB.closeStatement(st);
 			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
 	@Override
 	public void insert(Department obj) {
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement(
 				"INSERT INTO department " +
 				"(Name) " +
@@ -96,7 +141,9 @@ public class DepartmentDaoJDBC implements DepartmentDao {
 				if (rs.next()) {
 					int id = rs.getInt(1);
 					obj.setId(id);
+					obj.setVersion(0);
 				}
+				invalidate(obj.getId());
 			}
 			else {
 				throw new DbException("Unexpected error! No rows affected!");
@@ -107,47 +154,235 @@ public class DepartmentDaoJDBC implements DepartmentDao {
 		} 
 		finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
+	// applies only if the row is still at the version the department was read at, then advances it
 	@Override
 	public void update(Department obj) {
+		checkVersion(obj);
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
-			st = conn.prepareStatement(
-				"UPDATE department " +
-				"SET Name = ? " +
-				"WHERE Id = ?");
+			conn = pool.getConnection();
+			st = conn.prepareStatement(UPDATE);
 
 			st.setString(1, obj.getName());
 			st.setInt(2, obj.getId());
+			st.setInt(3, obj.getVersion());
 
-			st.executeUpdate();
+			int rowsAffected = st.executeUpdate();
+			// a conflict means the cached copy is stale too
+			invalidate(obj.getId());
+			if (rowsAffected == 0) {
+				throw conflict(obj);
+			}
+			advanceVersions(Collections.singletonList(obj));
 		}
 		catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} 
 		finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
 	@Override
 	public void deleteById(Integer id) {
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement(
 				"DELETE FROM department WHERE Id = ?");
 
 			st.setInt(1, id);
 
 			st.executeUpdate();
+			invalidate(id);
 		}
 		catch (SQLException e) {
 			throw new DbIntegrityException(e.getMessage());
 		} 
 		finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public void insertAll(List<Department> list) {
+		if (list.isEmpty()) {
+			return;
+		}
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement(
+				"INSERT INTO department " +
+				"(Name) " +
+				"VALUES " +
+				"(?)", 
+				Statement.RETURN_GENERATED_KEYS);
+
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Department> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+				for (Department obj : chunk) {
+					st.setString(1, obj.getName());
+					st.addBatch();
+				}
+				st.executeBatch();
+
+				int[] ids = new int[chunk.size()];
+				int keys = 0;
+				rs = st.getGeneratedKeys();
+				while (rs.next()) {
+					if (keys < ids.length) {
+						ids[keys] = rs.getInt(1);
+					}
+					keys++;
+				}
+				DB.closeResultSet(rs);
+				rs = null;
+				// the ids could not be matched to the rows, roll the chunk back rather than guess
+				if (keys != ids.length) {
+					throw new SQLException("Expected " + ids.length + " generated keys but got " + keys);
+				}
+
+				conn.commit();
+
+				// only hand out ids once the chunk is committed
+				for (int i = 0; i < ids.length; i++) {
+					chunk.get(i).setId(ids[i]);
+					chunk.get(i).setVersion(0);
+				}
+			}
+		}
+		catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+		} 
+		finally {
+			// chunks committed before a failure are visible too
+			invalidate(null);
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public void updateAll(List<Department> list) {
+		if (list.isEmpty()) {
+			return;
+		}
+		for (Department obj : list) {
+			checkVersion(obj);
+		}
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement(UPDATE);
+
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Department> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+				for (Department obj : chunk) {
+					st.setString(1, obj.getName());
+					st.setInt(2, obj.getId());
+					st.setInt(3, obj.getVersion());
+					st.addBatch();
+				}
+				int[] counts = st.executeBatch();
+				for (int i = 0; i < counts.length; i++) {
+					// SUCCESS_NO_INFO can't be checked and is taken as applied
+					if (counts[i] == 0) {
+						DB.rollback(conn);
+						throw conflict(chunk.get(i));
+					}
+				}
+				conn.commit();
+				advanceVersions(chunk);
+			}
+		}
+		catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+		} 
+		finally {
+			invalidate(null);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public void deleteAllById(List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement(
+				"DELETE FROM department WHERE Id = ?");
+
+			for (int from = 0; from < ids.size(); from += batchSize) {
+				for (Integer id : ids.subList(from, Math.min(from + batchSize, ids.size()))) {
+					st.setInt(1, id);
+					st.addBatch();
+				}
+				st.executeBatch();
+				conn.commit();
+			}
+		}
+		catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbIntegrityException("Transaction rolled back! Caused by: " + e.getMessage());
+		} 
+		finally {
+			invalidate(null);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	private Department instantiateDepartment(ResultSet rs) throws SQLException {
+		Department obj = new Department();
+		obj.setId(rs.getInt("Id"));
+		obj.setName(rs.getString("Name"));
+		obj.setVersion(rs.getInt("Version"));
+		return obj;
+	}
+
+	private void checkVersion(Department obj) {
+		if (obj.getVersion() == null) {
+			throw new DbException("Department " + obj.getId() + " has no version, it was not read from the database");
+		}
+	}
+
+	private DbConflictException conflict(Department obj) {
+		return new DbConflictException("Department " + obj.getId() + " was changed or deleted by another user",
+				obj.getId());
+	}
+
+	// the new versions only hold if the surrounding unit of work, if any, commits
+	private void advanceVersions(List<Department> departments) {
+		List<Department> advanced = new ArrayList<>(departments);
+		for (Department obj : advanced) {
+			obj.setVersion(obj.getVersion() + 1);
+		}
+		UnitOfWork unit = pool.currentUnitOfWork();
+		if (unit != null) {
+			unit.onRollback(() -> advanced.forEach(obj -> obj.setVersion(obj.getVersion() - 1)));
 		}
 	}
 }
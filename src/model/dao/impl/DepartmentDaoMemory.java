@@ -0,0 +1,139 @@
+package model.dao.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import db.DbConflictException;
+import db.DbException;
+import db.DbIntegrityException;
+import db.UnitOfWork;
+import model.dao.DepartmentDao;
+import model.entities.Department;
+
+/*
+ * DepartmentDao over a MemoryDatabase. The batch methods check the whole list before writing any of it,
+ * so they apply all or nothing instead of chunk by chunk.
+ */
+public class DepartmentDaoMemory implements DepartmentDao {
+
+	private MemoryDatabase db;
+
+	public DepartmentDaoMemory(MemoryDatabase db) {
+		this.db = db;
+	}
+
+	@Override
+	public Department findById(Integer id) {
+		Department row = db.getDepartment(id);
+		return row == null ? null : MemoryDatabase.copyOf(row);
+	}
+
+	@Override
+	public List<Department> findAll() {
+		List<Department> list = new ArrayList<>();
+		for (Department row : db.departments()) {
+			list.add(MemoryDatabase.copyOf(row));
+		}
+		return list;
+	}
+
+	@Override
+	public void insert(Department obj) {
+		checkNotNull(obj);
+		int id = db.nextDepartmentId();
+		db.putDepartment(row(id, obj.getName(), 0));
+		obj.setId(id);
+		obj.setVersion(0);
+	}
+
+	@Override
+	public void update(Department obj) {
+		synchronized (db) {
+			checkUpdate(obj);
+			db.putDepartment(row(obj.getId(), obj.getName(), obj.getVersion() + 1));
+		}
+		advanceVersion(obj);
+	}
+
+	@Override
+	public void deleteById(Integer id) {
+		synchronized (db) {
+			checkDelete(id);
+			db.removeDepartment(id);
+		}
+	}
+
+	@Override
+	public void insertAll(List<Department> list) {
+		for (Department obj : list) {
+			checkNotNull(obj);
+		}
+		for (Department obj : list) {
+			insert(obj);
+		}
+	}
+
+	@Override
+	public void updateAll(List<Department> list) {
+		synchronized (db) {
+			for (Department obj : list) {
+				checkUpdate(obj);
+			}
+			for (Department obj : list) {
+				update(obj);
+			}
+		}
+	}
+
+	@Override
+	public void deleteAllById(List<Integer> ids) {
+		synchronized (db) {
+			for (Integer id : ids) {
+				checkDelete(id);
+			}
+			for (Integer id : ids) {
+				db.removeDepartment(id);
+			}
+		}
+	}
+
+	// the new version only holds if the surrounding unit of work, if any, commits
+	private void advanceVersion(Department obj) {
+		obj.setVersion(obj.getVersion() + 1);
+		UnitOfWork unit = UnitOfWork.currentDetached();
+		if (unit != null) {
+			unit.onRollback(() -> obj.setVersion(obj.getVersion() - 1));
+		}
+	}
+
+	private Department row(Integer id, String name, int version) {
+		Department row = new Department(id, name);
+		row.setVersion(version);
+		return row;
+	}
+
+	private void checkNotNull(Department obj) {
+		if (obj.getName() == null) {
+			throw new DbException("Column 'Name' cannot be null");
+		}
+	}
+
+	private void checkUpdate(Department obj) {
+		checkNotNull(obj);
+		if (obj.getVersion() == null) {
+			throw new DbException("Department " + obj.getId() + " has no version, it was not read from the database");
+		}
+		Department row = db.getDepartment(obj.getId());
+		if (row == null || !row.getVersion().equals(obj.getVersion())) {
+			throw new DbConflictException("Department " + obj.getId() + " was changed or deleted by another user",
+					obj.getId());
+		}
+	}
+
+	// the seller table's foreign key
+	private void checkDelete(Integer id) {
+		if (!db.sellersOf(id).isEmpty()) {
+			throw new DbIntegrityException("Cannot delete department " + id + ", it still has sellers");
+		}
+	}
+}
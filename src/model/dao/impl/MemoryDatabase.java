@@ -0,0 +1,231 @@
+package model.dao.impl;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import db.UnitOfWork;
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * The tables of the in-memory backend. Rows are kept as private copies that are replaced, never changed,
+ * so reads go straight to the concurrent maps and indexes without locking, while writes are serialized.
+ * Besides the rows by id there are indexes ordered by (Name, Id), with names compared case-insensitively
+ * like the database's collation, and the sellers of each department in the same order. Those two seller
+ * indexes are also kept as sorted arrays, rebuilt on first use after a seller write, so a position or a
+ * count in them is a binary search.
+ * Writes made inside a detached unit of work are undone if it rolls back. There is no isolation:
+ * other threads see them before the unit commits.
+ */
+public class MemoryDatabase {
+
+	static final Comparator<Seller> SELLER_ORDER =
+			Comparator.comparing(Seller::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(Seller::getId);
+	static final Comparator<Department> DEPARTMENT_ORDER =
+			Comparator.comparing(Department::getName, String.CASE_INSENSITIVE_ORDER).thenComparing(Department::getId);
+
+	private final AtomicInteger departmentIds = new AtomicInteger();
+	private final AtomicInteger sellerIds = new AtomicInteger();
+
+	private final ConcurrentMap<Integer, Department> departments = new ConcurrentHashMap<>();
+	private final NavigableSet<Department> departmentsByName = new ConcurrentSkipListSet<>(DEPARTMENT_ORDER);
+	private final ConcurrentMap<Integer, Seller> sellers = new ConcurrentHashMap<>();
+	private final NavigableSet<Seller> sellersByName = new ConcurrentSkipListSet<>(SELLER_ORDER);
+	private final ConcurrentMap<Integer, NavigableSet<Seller>> sellersByDepartment = new ConcurrentHashMap<>();
+	// null, or absent for a department, until used after the last seller write
+	private volatile Seller[] sortedSellers;
+	private final ConcurrentMap<Integer, Seller[]> sortedSellersByDepartment = new ConcurrentHashMap<>();
+
+	// the rows of database.sql, plus generatedSellers more spread over the departments
+	public static MemoryDatabase withSampleData(int generatedSellers) {
+		MemoryDatabase db = new MemoryDatabase();
+		for (String name : new String[] { "Computers", "Electronics", "Fashion", "Books" }) {
+			Department department = new Department(db.nextDepartmentId(), name);
+			department.setVersion(0);
+			db.putDepartment(department);
+		}
+		db.putSample("Bob Brown", "bob@gmail.com", LocalDate.of(1998, 4, 21), 1000, 1);
+		db.putSample("Maria Green", "maria@gmail.com", LocalDate.of(1979, 12, 31), 3500, 2);
+		db.putSample("Alex Grey", "alex@gmail.com", LocalDate.of(1988, 1, 15), 2200, 1);
+		db.putSample("Martha Red", "martha@gmail.com", LocalDate.of(1993, 11, 30), 3000, 4);
+		db.putSample("Donald Blue", "donald@gmail.com", LocalDate.of(2000, 1, 9), 4000, 3);
+		db.putSample("Alex Pink", "bob@gmail.com", LocalDate.of(1997, 3, 4), 3000, 2);
+
+		// fixed seed, every run gets the same rows
+		Random random = new Random(42);
+		for (int i = 1; i <= generatedSellers; i++) {
+			db.putSample("Seller " + i, "seller" + i + "@example.com",
+					LocalDate.of(1960 + random.nextInt(45), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+					1000 + random.nextInt(400) * 10, 1 + random.nextInt(4));
+		}
+		return db;
+	}
+
+	private void putSample(String name, String email, LocalDate birthDate, double baseSalary, int departmentId) {
+		Seller seller = new Seller(nextSellerId(), name, email,
+				Date.from(birthDate.atStartOfDay(ZoneId.systemDefault()).toInstant()), baseSalary,
+				departments.get(departmentId));
+		seller.setVersion(0);
+		putSeller(seller);
+	}
+
+	int nextDepartmentId() {
+		return departmentIds.incrementAndGet();
+	}
+
+	int nextSellerId() {
+		return sellerIds.incrementAndGet();
+	}
+
+	Department getDepartment(Integer id) {
+		return id == null ? null : departments.get(id);
+	}
+
+	// in (Name, Id) order
+	Iterable<Department> departments() {
+		return departmentsByName;
+	}
+
+	Seller getSeller(Integer id) {
+		return id == null ? null : sellers.get(id);
+	}
+
+	int sellerCount() {
+		return sellers.size();
+	}
+
+	// in (Name, Id) order
+	NavigableSet<Seller> sellers() {
+		return sellersByName;
+	}
+
+	NavigableSet<Seller> sellersOf(Integer departmentId) {
+		NavigableSet<Seller> set = sellersByDepartment.get(departmentId);
+		return set == null ? Collections.emptyNavigableSet() : set;
+	}
+
+	// in (Name, Id) order; not to be changed
+	Seller[] sortedSellers() {
+		Seller[] sorted = sortedSellers;
+		if (sorted == null) {
+			// built while no write runs, so it matches the index
+			synchronized (this) {
+				if (sortedSellers == null) {
+					sortedSellers = sellersByName.toArray(new Seller[0]);
+				}
+				sorted = sortedSellers;
+			}
+		}
+		return sorted;
+	}
+
+	Seller[] sortedSellersOf(Integer departmentId) {
+		Seller[] sorted = sortedSellersByDepartment.get(departmentId);
+		if (sorted == null) {
+			synchronized (this) {
+				sorted = sortedSellersByDepartment.computeIfAbsent(departmentId,
+						id -> sellersOf(id).toArray(new Seller[0]));
+			}
+		}
+		return sorted;
+	}
+
+	// stores the row, which must not be changed afterwards, in place of the one with the same id
+	synchronized void putDepartment(Department row) {
+		Department previous = departments.put(row.getId(), row);
+		if (previous != null) {
+			departmentsByName.remove(previous);
+		}
+		departmentsByName.add(row);
+		// sellers keep the department they were stored with, point them at the new row
+		List<Seller> moved = new ArrayList<>(sellersOf(row.getId()));
+		for (Seller seller : moved) {
+			replaceSeller(seller, copyOf(seller, row));
+		}
+		undoable(() -> {
+			if (previous == null) {
+				removeDepartment(row.getId());
+			} else {
+				putDepartment(previous);
+			}
+		});
+	}
+
+	synchronized void removeDepartment(Integer id) {
+		Department previous = departments.remove(id);
+		if (previous != null) {
+			departmentsByName.remove(previous);
+			undoable(() -> putDepartment(previous));
+		}
+	}
+
+	synchronized void putSeller(Seller row) {
+		Seller previous = sellers.get(row.getId());
+		replaceSeller(previous, row);
+		undoable(() -> {
+			if (previous == null) {
+				removeSeller(row.getId());
+			} else {
+				putSeller(previous);
+			}
+		});
+	}
+
+	synchronized void removeSeller(Integer id) {
+		Seller previous = sellers.get(id);
+		if (previous != null) {
+			replaceSeller(previous, null);
+			undoable(() -> putSeller(previous));
+		}
+	}
+
+	// keeps the indexes in step with the rows; either side may be null
+	private void replaceSeller(Seller previous, Seller row) {
+		sortedSellers = null;
+		sortedSellersByDepartment.clear();
+		if (previous != null) {
+			sellers.remove(previous.getId());
+			sellersByName.remove(previous);
+			sellersOf(previous.getDepartment().getId()).remove(previous);
+		}
+		if (row != null) {
+			sellers.put(row.getId(), row);
+			sellersByName.add(row);
+			sellersByDepartment.computeIfAbsent(row.getDepartment().getId(),
+					id -> new ConcurrentSkipListSet<>(SELLER_ORDER)).add(row);
+		}
+	}
+
+	// the unit is no longer current when its rollback actions run, so undoing registers nothing
+	private void undoable(Runnable undo) {
+		UnitOfWork unit = UnitOfWork.currentDetached();
+		if (unit != null) {
+			unit.onRollback(undo);
+		}
+	}
+
+	static Department copyOf(Department department) {
+		Department copy = new Department(department.getId(), department.getName());
+		copy.setVersion(department.getVersion());
+		return copy;
+	}
+
+	static Seller copyOf(Seller seller, Department department) {
+		Seller copy = new Seller(seller.getId(), seller.getName(), seller.getEmail(),
+				seller.getBirthDate() == null ? null : new Date(seller.getBirthDate().getTime()),
+				seller.getBaseSalary(), department);
+		copy.setVersion(seller.getVersion());
+		return copy;
+	}
+}
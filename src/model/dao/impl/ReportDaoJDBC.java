@@ -0,0 +1,95 @@
+package model.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import db.ConnectionPool;
+import db.DB;
+import db.DbException;
+import model.dao.ReportDao;
+import model.entities.AgeBand;
+import model.entities.DepartmentPayroll;
+
+public class ReportDaoJDBC implements ReportDao {
+
+	private ConnectionPool pool;
+
+	public ReportDaoJDBC(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public List<DepartmentPayroll> findPayrollByDepartment() {
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement(
+					"SELECT department.Id, department.Name, COUNT(seller.Id) AS SellerCount, "
+					+ "SUM(seller.BaseSalary) AS TotalSalary, AVG(seller.BaseSalary) AS AverageSalary, "
+					+ "MIN(seller.BaseSalary) AS MinSalary, MAX(seller.BaseSalary) AS MaxSalary "
+					+ "FROM department LEFT JOIN seller ON seller.DepartmentId = department.Id "
+					+ "GROUP BY department.Id, department.Name "
+					+ "ORDER BY department.Name");
+			rs = st.executeQuery();
+
+			List<DepartmentPayroll> list = new ArrayList<>();
+			while (rs.next()) {
+				list.add(new DepartmentPayroll(rs.getInt("Id"), rs.getString("Name"), rs.getInt("SellerCount"),
+						rs.getDouble("TotalSalary"), getDouble(rs, "AverageSalary"), getDouble(rs, "MinSalary"),
+						getDouble(rs, "MaxSalary")));
+			}
+			return list;
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public List<AgeBand> findAgeBands(int bandYears) {
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement(
+					"SELECT FLOOR(TIMESTAMPDIFF(YEAR, BirthDate, CURRENT_DATE) / ?) AS Band, "
+					+ "COUNT(*) AS SellerCount, AVG(BaseSalary) AS AverageSalary "
+					+ "FROM seller GROUP BY Band ORDER BY Band");
+			st.setInt(1, bandYears);
+			rs = st.executeQuery();
+
+			List<AgeBand> list = new ArrayList<>();
+			while (rs.next()) {
+				int band = rs.getInt("Band");
+				list.add(new AgeBand(band * bandYears, band * bandYears + bandYears - 1, rs.getInt("SellerCount"),
+						rs.getDouble("AverageSalary")));
+			}
+			return list;
+		}
+		catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		}
+		finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	private Double getDouble(ResultSet rs, String column) throws SQLException {
+		double value = rs.getDouble(column);
+		return rs.wasNull() ? null : value;
+	}
+}
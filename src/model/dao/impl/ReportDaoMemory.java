@@ -0,0 +1,69 @@
+package model.dao.impl;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.dao.ReportDao;
+import model.entities.AgeBand;
+import model.entities.Department;
+import model.entities.DepartmentPayroll;
+import model.entities.Seller;
+
+// the aggregates of ReportDaoJDBC, computed from the indexes of a MemoryDatabase
+public class ReportDaoMemory implements ReportDao {
+
+	private MemoryDatabase db;
+
+	public ReportDaoMemory(MemoryDatabase db) {
+		this.db = db;
+	}
+
+	@Override
+	public List<DepartmentPayroll> findPayrollByDepartment() {
+		List<DepartmentPayroll> list = new ArrayList<>();
+		for (Department department : db.departments()) {
+			int count = 0;
+			double total = 0;
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (Seller seller : db.sellersOf(department.getId())) {
+				double salary = seller.getBaseSalary();
+				count++;
+				total += salary;
+				min = Math.min(min, salary);
+				max = Math.max(max, salary);
+			}
+			// like the SQL aggregates, no sellers gives a null average, minimum and maximum
+			list.add(new DepartmentPayroll(department.getId(), department.getName(), count, total,
+					count == 0 ? null : total / count, count == 0 ? null : min, count == 0 ? null : max));
+		}
+		return list;
+	}
+
+	@Override
+	public List<AgeBand> findAgeBands(int bandYears) {
+		LocalDate today = LocalDate.now();
+		// band -> { count, total salary }
+		Map<Integer, double[]> bands = new TreeMap<>();
+		for (Seller seller : db.sellers()) {
+			LocalDate birthDate = seller.getBirthDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+			int band = Math.floorDiv(Period.between(birthDate, today).getYears(), bandYears);
+			double[] totals = bands.computeIfAbsent(band, b -> new double[2]);
+			totals[0]++;
+			totals[1] += seller.getBaseSalary();
+		}
+		List<AgeBand> list = new ArrayList<>();
+		for (Map.Entry<Integer, double[]> entry : bands.entrySet()) {
+			int band = entry.getKey();
+			double[] totals = entry.getValue();
+			list.add(new AgeBand(band * bandYears, band * bandYears + bandYears - 1, (int) totals[0],
+					totals[1] / totals[0]));
+		}
+		return list;
+	}
+}
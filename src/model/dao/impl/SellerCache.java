@@ -0,0 +1,223 @@
+package model.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * Committed sellers shared by every DAO, keyed by id, with a secondary index by email.
+ * Entries expire after ttlMillis and are evicted W-TinyLFU style when over maxSize.
+ * Sellers are copied in and out, so callers never share an instance through the cache.
+ * Emails are not unique, so the index maps an email to the ids of every seller with it,
+ * and a lookup only hits while all of those sellers are still cached by id: dropping a
+ * seller by id is enough to stop its old email from returning it.
+ * Writes go through SellerDaoJDBC, which invalidates the affected ids and emails.
+ * Rows are put with the generation() taken before they were read, and dropped if an
+ * invalidation happened in between, so a read that raced a write can't put back the old row.
+ */
+public class SellerCache implements SellerCacheMBean {
+
+	private final int maxEmails;
+	private final long ttlMillis;
+
+	private final TinyLfuCache<Integer, Entry> byId;
+	private final Map<String, List<Integer>> idsByEmail;
+
+	private long generation;
+	private long hits;
+	private long misses;
+	private long emailHits;
+	private long emailMisses;
+
+	public SellerCache(int maxSize, long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		this.byId = new TinyLfuCache<>(maxSize);
+		this.maxEmails = Math.max(1, maxSize / 4);
+		this.idsByEmail = new LinkedHashMap<String, List<Integer>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Integer>> eldest) {
+				return size() > maxEmails;
+			}
+		};
+	}
+
+	public synchronized Seller get(Integer id) {
+		Seller seller = lookup(id);
+		if (seller == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return copyOf(seller);
+	}
+
+	// taken before reading the rows that are put
+	public synchronized long generation() {
+		return generation;
+	}
+
+	public synchronized void put(Seller seller, long readAt) {
+		if (readAt == generation) {
+			byId.put(seller.getId(), new Entry(copyOf(seller), System.currentTimeMillis()));
+		}
+	}
+
+	// null when the email's sellers are not all cached, otherwise copies in the order they were put
+	public synchronized List<Seller> getByEmail(String email) {
+		List<Integer> ids = idsByEmail.get(key(email));
+		if (ids != null) {
+			List<Seller> sellers = new ArrayList<>(ids.size());
+			for (Integer id : ids) {
+				Seller seller = lookup(id);
+				if (seller == null) {
+					break;
+				}
+				sellers.add(copyOf(seller));
+			}
+			if (sellers.size() == ids.size()) {
+				emailHits++;
+				return sellers;
+			}
+			idsByEmail.remove(key(email));
+		}
+		emailMisses++;
+		return null;
+	}
+
+	// every seller with the email, as the database returned them
+	public synchronized void putByEmail(String email, List<Seller> sellers, long readAt) {
+		if (readAt != generation) {
+			return;
+		}
+		List<Integer> ids = new ArrayList<>(sellers.size());
+		long now = System.currentTimeMillis();
+		for (Seller seller : sellers) {
+			byId.put(seller.getId(), new Entry(copyOf(seller), now));
+			ids.add(seller.getId());
+		}
+		idsByEmail.put(key(email), ids);
+	}
+
+	// null ids and emails are skipped, e.g. the id of a seller not inserted yet
+	public synchronized void invalidate(Collection<Integer> ids, Collection<String> emails) {
+		generation++;
+		for (Integer id : ids) {
+			if (id != null) {
+				Entry entry = byId.remove(id);
+				if (entry != null) {
+					idsByEmail.remove(key(entry.seller.getEmail()));
+				}
+			}
+		}
+		for (String email : emails) {
+			if (email != null) {
+				idsByEmail.remove(key(email));
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		generation++;
+		byId.clear();
+		idsByEmail.clear();
+	}
+
+	@Override
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	@Override
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized double getHitRatio() {
+		long lookups = hits + misses + emailHits + emailMisses;
+		return lookups == 0 ? 0 : (double) (hits + emailHits) / lookups;
+	}
+
+	@Override
+	public synchronized long getEmailHits() {
+		return emailHits;
+	}
+
+	@Override
+	public synchronized long getEmailMisses() {
+		return emailMisses;
+	}
+
+	@Override
+	public synchronized long getEvictions() {
+		return byId.getEvictions();
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return byId.size();
+	}
+
+	@Override
+	public synchronized void resetStats() {
+		hits = 0;
+		misses = 0;
+		emailHits = 0;
+		emailMisses = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("SellerCache size=%d hits=%d misses=%d emailHits=%d emailMisses=%d hitRatio=%.3f evictions=%d",
+				byId.size(), hits, misses, emailHits, emailMisses, getHitRatio(), byId.getEvictions());
+	}
+
+	private Seller lookup(Integer id) {
+		Entry entry = byId.get(id);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+			byId.remove(id);
+			return null;
+		}
+		return entry.seller;
+	}
+
+	// MySQL compares emails without case under the default collation
+	private static String key(String email) {
+		return email.toLowerCase(Locale.ROOT);
+	}
+
+	private static Seller copyOf(Seller seller) {
+		Date birthDate = seller.getBirthDate() == null ? null : new Date(seller.getBirthDate().getTime());
+		Department department = seller.getDepartment();
+		if (department != null) {
+			department = new Department(department.getId(), department.getName());
+			department.setVersion(seller.getDepartment().getVersion());
+		}
+		Seller copy = new Seller(seller.getId(), seller.getName(), seller.getEmail(), birthDate,
+				seller.getBaseSalary(), department);
+		copy.setVersion(seller.getVersion());
+		return copy;
+	}
+
+	private static class Entry {
+		final Seller seller;
+		final long loadedAt;
+
+		Entry(Seller seller, long loadedAt) {
+			this.seller = seller;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
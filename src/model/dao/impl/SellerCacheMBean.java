@@ -0,0 +1,21 @@
+package model.dao.impl;
+
+public interface SellerCacheMBean {
+
+	long getHits();
+
+	long getMisses();
+
+	// hits over lookups, by id and by email together; 0 before the first lookup
+	double getHitRatio();
+
+	long getEmailHits();
+
+	long getEmailMisses();
+
+	long getEvictions();
+
+	int getSize();
+
+	void resetStats();
+}
@@ -6,36 +6,113 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
+import db.CancellationToken;
+import db.ConnectionPool;
 import db.DB;
+import db.DbConflictException;
 import db.DbException;
+import db.UnitOfWork;
+import model.dao.DepartmentDao;
+import model.dao.SellerCriteria;
 import model.dao.SellerDao;
+import model.dao.SellerTable;
 import model.entities.Department;
 import model.entities.Seller;
 
 public class SellerDaoJDBC implements SellerDao {
 
-	private Connection conn;
+	// Connector/J only streams a forward-only result set row by row with this fetch size
+	private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+	private static final int[] IN_LIST_SIZES = { 1, 8, 32 };
+	private static final int DEFAULT_TABLE_CAPACITY = 256;
+	private static final String UPDATE = "UPDATE seller "
+			+ "SET Name = ?, Email = ?, BirthDate = ?, BaseSalary = ?, DepartmentId = ?, Version = Version + 1 "
+			+ "WHERE Id = ? AND Version = ?";
+
+	private ConnectionPool pool;
+	private int batchSize;
+	// departments come from the shared department cache instead of a join
+	private DepartmentDao departmentDao;
+	// findById and findByEmail outside a unit of work; null to always query
+	private SellerCache cache;
+
+	public SellerDaoJDBC(ConnectionPool pool, int batchSize, DepartmentDao departmentDao) {
+		this(pool, batchSize, departmentDao, null);
+	}
+
+	public SellerDaoJDBC(ConnectionPool pool, int batchSize, DepartmentDao departmentDao, SellerCache cache) {
+		this.pool = pool;
+		this.batchSize = batchSize;
+		this.departmentDao = departmentDao;
+		this.cache = cache;
+	}
 
-	public SellerDaoJDBC(Connection conn) {
-		this.conn = conn;
+	/*
+	 * Inside a unit of work, sellers read or written are kept by id for as long as it is open,
+	 * so reading one twice returns the same instance and sees the unit's own writes.
+	 * The shared cache only holds committed rows and is not used inside a unit.
+	 */
+	private Map<Integer, Seller> identityMap() {
+		UnitOfWork unit = pool.currentUnitOfWork();
+		return unit == null ? null : unit.getResource(Seller.class, HashMap::new);
+	}
+
+	// a reader may cache the committed row again before the unit ends, so a unit evicts once more at its end
+	private void evict(Collection<Integer> ids, Collection<String> emails) {
+		if (cache == null) {
+			return;
+		}
+		cache.invalidate(ids, emails);
+		UnitOfWork unit = pool.currentUnitOfWork();
+		if (unit != null) {
+			unit.onCompletion(() -> cache.invalidate(ids, emails));
+		}
+	}
+
+	private void evict(List<Seller> sellers) {
+		List<Integer> ids = new ArrayList<>(sellers.size());
+		List<String> emails = new ArrayList<>(sellers.size());
+		for (Seller obj : sellers) {
+			ids.add(obj.getId());
+			emails.add(obj.getEmail());
+		}
+		evict(ids, emails);
+		Map<Integer, Seller> identityMap = identityMap();
+		if (identityMap != null) {
+			for (Seller obj : sellers) {
+				if (obj.getId() != null) {
+					identityMap.put(obj.getId(), obj);
+				}
+			}
+		}
+	}
+
+	private void evictIds(List<Integer> ids) {
+		evict(ids, Collections.emptyList());
+		Map<Integer, Seller> identityMap = identityMap();
+		if (identityMap != null) {
+			identityMap.keySet().removeAll(ids);
+		}
 	}
 
 	@Override
 	public void insert(Seller obj) {
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement("INSERT INTO seller " + "(Name, Email, BirthDate, BaseSalary, DepartmentId) "
 					+ "VALUES " + "(?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
 
-			st.setString(1, obj.getName());
-			st.setString(2, obj.getEmail());
-			st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));			
-			st.setDouble(4, obj.getBaseSalary());
-			st.setInt(5, obj.getDepartment().getId());
+			setSellerParameters(st, obj);
 
 			int rowsAffected = st.executeUpdate();
 
@@ -44,8 +121,11 @@ public class SellerDaoJDBC implements SellerDao {
 				if (rs.next()) {
 					int id = rs.getInt(1);
 					obj.setId(id);
+					obj.setVersion(0);
 				}
 				DB.closeResultSet(rs);
+				// the new seller joins the lookups of its email
+				evict(Collections.singletonList(obj));
 			} else {
 				throw new DbException("Unexpected error! No rows affected!");
 			}
@@ -53,70 +133,324 @@ public class SellerDaoJDBC implements SellerDao {
 			throw new DbException(e.getMessage());
 		} finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
+	// applies only if the row is still at the version the seller was read at, then advances it
 	@Override
 	public void update(Seller obj) {
+		checkVersion(obj);
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
-			st = conn.prepareStatement("UPDATE seller "
-					+ "SET Name = ?, Email = ?, BirthDate = ?, BaseSalary = ?, DepartmentId = ? " + "WHERE Id = ?");
+			conn = pool.getConnection();
+			st = conn.prepareStatement(UPDATE);
 
-			st.setString(1, obj.getName());
-			st.setString(2, obj.getEmail());
-			st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
-			st.setDouble(4, obj.getBaseSalary());
-			st.setInt(5, obj.getDepartment().getId());
+			setSellerParameters(st, obj);
 			st.setInt(6, obj.getId());
+			st.setInt(7, obj.getVersion());
 
-			st.executeUpdate();
+			if (st.executeUpdate() == 0) {
+				evictIds(Collections.singletonList(obj.getId()));
+				throw conflict(obj);
+			}
+			advanceVersions(Collections.singletonList(obj));
+			evict(Collections.singletonList(obj));
 		} catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
 	@Override
 	public void deleteById(Integer id) {
+		Connection conn = null;
 		PreparedStatement st = null;
 		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement("DELETE FROM seller WHERE Id = ?");
 
 			st.setInt(1, id);
 
 			st.executeUpdate();
+			evictIds(Collections.singletonList(id));
 		} catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} finally {
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
 	}
 
 	@Override
-	public Seller findById(Integer id) {
+	public void insertAll(List<Seller> list) {
+		if (list.isEmpty()) {
+			return;
+		}
+		Connection conn = null;
 		PreparedStatement st = null;
 		ResultSet rs = null;
 		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement("INSERT INTO seller " + "(Name, Email, BirthDate, BaseSalary, DepartmentId) "
+					+ "VALUES " + "(?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Seller> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+				for (Seller obj : chunk) {
+					setSellerParameters(st, obj);
+					st.addBatch();
+				}
+				st.executeBatch();
+
+				int[] ids = new int[chunk.size()];
+				int keys = 0;
+				rs = st.getGeneratedKeys();
+				while (rs.next()) {
+					if (keys < ids.length) {
+						ids[keys] = rs.getInt(1);
+					}
+					keys++;
+				}
+				DB.closeResultSet(rs);
+				rs = null;
+				// the ids could not be matched to the rows, roll the chunk back rather than guess
+				if (keys != ids.length) {
+					throw new SQLException("Expected " + ids.length + " generated keys but got " + keys);
+				}
+
+				conn.commit();
+
+				// only hand out ids once the chunk is committed
+				for (int i = 0; i < ids.length; i++) {
+					chunk.get(i).setId(ids[i]);
+					chunk.get(i).setVersion(0);
+				}
+				evict(chunk);
+			}
+		} catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+		} finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public void updateAll(List<Seller> list) {
+		if (list.isEmpty()) {
+			return;
+		}
+		for (Seller obj : list) {
+			checkVersion(obj);
+		}
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement(UPDATE);
+
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Seller> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+				for (Seller obj : chunk) {
+					setSellerParameters(st, obj);
+					st.setInt(6, obj.getId());
+					st.setInt(7, obj.getVersion());
+					st.addBatch();
+				}
+				int[] counts = st.executeBatch();
+				for (int i = 0; i < counts.length; i++) {
+					// SUCCESS_NO_INFO can't be checked and is taken as applied
+					if (counts[i] == 0) {
+						DB.rollback(conn);
+						evictIds(Collections.singletonList(chunk.get(i).getId()));
+						throw conflict(chunk.get(i));
+					}
+				}
+				conn.commit();
+				advanceVersions(chunk);
+				evict(chunk);
+			}
+		} catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+		} finally {
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public void deleteAllById(List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+			st = conn.prepareStatement("DELETE FROM seller WHERE Id = ?");
+
+			for (int from = 0; from < ids.size(); from += batchSize) {
+				List<Integer> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+				for (Integer id : chunk) {
+					st.setInt(1, id);
+					st.addBatch();
+				}
+				st.executeBatch();
+				conn.commit();
+				evictIds(new ArrayList<>(chunk));
+			}
+		} catch (SQLException e) {
+			DB.rollback(conn);
+			throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+		} finally {
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public int reassignDepartment(Integer fromDepartmentId, Integer toDepartmentId) {
+		Connection conn = null;
+		PreparedStatement st = null;
+		try {
+			conn = pool.getConnection();
 			st = conn.prepareStatement(
-					"SELECT seller.*,department.Name as DepName " + "FROM seller INNER JOIN department "
-							+ "ON seller.DepartmentId = department.Id " + "WHERE seller.Id = ?");
+					"UPDATE seller SET DepartmentId = ?, Version = Version + 1 WHERE DepartmentId = ?");
+
+			st.setInt(1, toDepartmentId);
+			st.setInt(2, fromDepartmentId);
+
+			int moved = st.executeUpdate();
+			// the moved ids are not known here
+			if (cache != null) {
+				cache.invalidateAll();
+				UnitOfWork unit = pool.currentUnitOfWork();
+				if (unit != null) {
+					unit.onCompletion(cache::invalidateAll);
+				}
+			}
+			Map<Integer, Seller> identityMap = identityMap();
+			if (identityMap != null) {
+				identityMap.clear();
+			}
+			return moved;
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public Seller findById(Integer id) {
+		Map<Integer, Seller> identityMap = identityMap();
+		if (identityMap != null) {
+			Seller seller = identityMap.get(id);
+			if (seller == null) {
+				seller = queryById(id);
+				if (seller != null) {
+					identityMap.put(id, seller);
+				}
+			}
+			return seller;
+		}
+		if (cache == null) {
+			return queryById(id);
+		}
+		Seller seller = cache.get(id);
+		if (seller == null) {
+			long readAt = cache.generation();
+			seller = queryById(id);
+			if (seller != null) {
+				cache.put(seller, readAt);
+			}
+		}
+		return seller;
+	}
+
+	@Override
+	public List<Seller> findByEmail(String email) {
+		boolean cacheable = cache != null && pool.currentUnitOfWork() == null;
+		if (cacheable) {
+			List<Seller> cached = cache.getByEmail(email);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		long readAt = cacheable ? cache.generation() : 0;
+
+		Map<Integer, Department> map = departmentMap();
+		List<Seller> list = new ArrayList<>();
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller WHERE Email = ? ORDER BY Name, Id");
+
+			st.setString(1, email);
+			rs = st.executeQuery();
+
+			while (rs.next()) {
+				list.add(instantiateSeller(rs, findDepartment(map, rs.getInt("DepartmentId"))));
+			}
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+		resolveDepartments(map);
+		if (cacheable) {
+			cache.putByEmail(email, list, readAt);
+		}
+		return list;
+	}
+
+	private Seller queryById(Integer id) {
+		Map<Integer, Department> map = departmentMap();
+		Seller obj = null;
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller WHERE Id = ?");
 
 			st.setInt(1, id);
 			rs = st.executeQuery();
 			if (rs.next()) {
-				Department dep = instantiateDepartment(rs);
-				Seller obj = instantiateSeller(rs, dep);
-				return obj;
+				obj = instantiateSeller(rs, findDepartment(map, rs.getInt("DepartmentId")));
 			}
-			return null;
 		} catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} finally {
-			DB.closeStatement(st);
 			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
+		resolveDepartments(map);
+		return obj;
+	}
+
+	private void setSellerParameters(PreparedStatement st, Seller obj) throws SQLException {
+		st.setString(1, obj.getName());
+		st.setString(2, obj.getEmail());
+		st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
+		st.setDouble(4, obj.getBaseSalary());
+		st.setInt(5, obj.getDepartment().getId());
 	}
 
 	private Seller instantiateSeller(ResultSet rs, Department dep) throws SQLException {
@@ -129,85 +463,395 @@ public class SellerDaoJDBC implements SellerDao {
 		obj.setBirthDate(new java.util.Date(rs.getTimestamp("BirthDate").getTime()));
 		
 		obj.setDepartment(dep);
+		obj.setVersion(rs.getInt("Version"));
 		return obj;
 	}
 
-	private Department instantiateDepartment(ResultSet rs) throws SQLException {
-		Department dep = new Department();
-		dep.setId(rs.getInt("DepartmentId"));
-		dep.setName(rs.getString("DepName"));
+	private void checkVersion(Seller obj) {
+		if (obj.getVersion() == null) {
+			throw new DbException("Seller " + obj.getId() + " has no version, it was not read from the database");
+		}
+	}
+
+	private DbConflictException conflict(Seller obj) {
+		return new DbConflictException("Seller " + obj.getId() + " was changed or deleted by another user",
+				obj.getId());
+	}
+
+	// the new versions only hold if the surrounding unit of work, if any, commits
+	private void advanceVersions(List<Seller> sellers) {
+		List<Seller> advanced = new ArrayList<>(sellers);
+		for (Seller obj : advanced) {
+			obj.setVersion(obj.getVersion() + 1);
+		}
+		UnitOfWork unit = pool.currentUnitOfWork();
+		if (unit != null) {
+			unit.onRollback(() -> advanced.forEach(obj -> obj.setVersion(obj.getVersion() - 1)));
+		}
+	}
+
+	// fills the columns straight from the result set, without a Seller per row
+	private SellerTable readTable(ResultSet rs, int initialCapacity, Map<Integer, Department> map)
+			throws SQLException {
+		SellerTable table = new SellerTable(initialCapacity);
+
+		while (rs.next()) {
+			addRow(table, rs, map);
+		}
+		table.trimToSize();
+		return table;
+	}
+
+	private void addRow(SellerTable table, ResultSet rs, Map<Integer, Department> map) throws SQLException {
+		Department dep = findDepartment(map, rs.getInt("DepartmentId"));
+		table.add(rs.getInt("Id"), rs.getString("Name"), rs.getString("Email"),
+				rs.getTimestamp("BirthDate").getTime(), rs.getDouble("BaseSalary"), dep, rs.getInt("Version"));
+	}
+
+	/*
+	 * Every department by id, read before a connection is borrowed: loading one while the rows are
+	 * being read would take a second connection from the pool, and threads that each hold one and
+	 * wait for another can exhaust it.
+	 */
+	private Map<Integer, Department> departmentMap() {
+		Map<Integer, Department> map = new HashMap<>();
+		for (Department dep : departmentDao.findAll()) {
+			map.put(dep.getId(), dep);
+		}
+		return map;
+	}
+
+	// a department created after the map was read gets a placeholder that resolveDepartments fills in
+	private Department findDepartment(Map<Integer, Department> map, int departmentId) {
+		Department dep = map.get(departmentId);
+		if (dep == null) {
+			dep = new Department(departmentId, null);
+			map.put(departmentId, dep);
+		}
 		return dep;
 	}
 
+	// only once the connection is given back
+	private void resolveDepartments(Map<Integer, Department> map) {
+		for (Department dep : map.values()) {
+			if (dep.getName() == null) {
+				Department loaded = departmentDao.findById(dep.getId());
+				if (loaded != null) {
+					dep.setName(loaded.getName());
+					dep.setVersion(loaded.getVersion());
+				}
+			}
+		}
+	}
+
 	@Override
 	public List<Seller> findAll() {
+		Map<Integer, Department> map = departmentMap();
+		SellerTable table;
+		Connection conn = null;
 		PreparedStatement st = null;
 		ResultSet rs = null;
 		try {
-			st = conn.prepareStatement(
-					"SELECT seller.*,department.Name as DepName " + "FROM seller INNER JOIN department "
-							+ "ON seller.DepartmentId = department.Id " + "ORDER BY Name");
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller ORDER BY Name");
 
 			rs = st.executeQuery();
 
-			List<Seller> list = new ArrayList<>();
-			Map<Integer, Department> map = new HashMap<>();
+			table = readTable(rs, DEFAULT_TABLE_CAPACITY, map);
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+		resolveDepartments(map);
+		return table;
+	}
 
-			while (rs.next()) {
+	@Override
+	public List<Seller> findByDepartment(Department department) {
+		Map<Integer, Department> map = departmentMap();
+		SellerTable table;
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller WHERE DepartmentId = ? ORDER BY Name");
 
-				Department dep = map.get(rs.getInt("DepartmentId"));
+			st.setInt(1, department.getId());
 
-				if (dep == null) {
-					dep = instantiateDepartment(rs);
-					map.put(rs.getInt("DepartmentId"), dep);
-				}
+			rs = st.executeQuery();
 
-				Seller obj = instantiateSeller(rs, dep);
-				list.add(obj);
+			table = readTable(rs, DEFAULT_TABLE_CAPACITY, map);
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+		resolveDepartments(map);
+		return table;
+	}
+
+	@Override
+	public List<Seller> findByIds(Collection<Integer> ids) {
+		List<Integer> list = new ArrayList<>(ids);
+		SellerTable table = new SellerTable(list.size());
+		Map<Integer, Department> map = departmentMap();
+
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			for (int from = 0; from < list.size(); from += batchSize) {
+				List<Integer> chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+				// padded with the last id, which matches the same row again, to one of a few list sizes
+				int size = inListSize(chunk.size());
+				st = conn.prepareStatement("SELECT * FROM seller WHERE Id IN ("
+						+ String.join(", ", Collections.nCopies(size, "?")) + ")");
+				for (int i = 0; i < size; i++) {
+					st.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+				}
+				rs = st.executeQuery();
+				while (rs.next()) {
+					addRow(table, rs, map);
+				}
+				DB.closeResultSet(rs);
+				rs = null;
+				DB.closeStatement(st);
+				st = null;
 			}
-			return list;
 		} catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} finally {
+			DB.closeResultSet(rs);
 			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+		resolveDepartments(map);
+		return table;
+	}
+
+	// every IN list length is its own statement, so only these few are prepared and cached
+	private int inListSize(int ids) {
+		for (int size : IN_LIST_SIZES) {
+			if (ids <= size && size <= batchSize) {
+				return size;
+			}
+		}
+		return batchSize;
+	}
+
+	@Override
+	public List<Seller> findPage(SellerCriteria criteria, String afterName, Integer afterId, int pageSize) {
+		List<Object> params = new ArrayList<>();
+		List<String> conditions = criteriaConditions(criteria, params);
+		if (afterName != null) {
+			// seek past the last row of the previous page instead of using OFFSET
+			conditions.add("(Name > ? OR (Name = ? AND Id > ?))");
+			params.add(afterName);
+			params.add(afterName);
+			params.add(afterId);
+		}
+		params.add(pageSize);
+
+		Map<Integer, Department> map = departmentMap();
+		SellerTable table;
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller" + where(conditions) + " ORDER BY Name, Id LIMIT ?");
+			setParameters(st, params);
+
+			CancellationToken.register(st);
+			rs = st.executeQuery();
+
+			table = readTable(rs, pageSize, map);
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			CancellationToken.unregister();
 			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
 		}
+		resolveDepartments(map);
+		return table;
 	}
 
 	@Override
-	public List<Seller> findByDepartment(Department department) {
+	public Seller findKeyAt(SellerCriteria criteria, int offset) {
+		List<Object> params = new ArrayList<>();
+		List<String> conditions = criteriaConditions(criteria, params);
+		params.add(offset);
+
+		Connection conn = null;
 		PreparedStatement st = null;
 		ResultSet rs = null;
 		try {
+			conn = pool.getConnection();
+			// only the key columns, so the skipped rows can be read from the (Name, Id) index
 			st = conn.prepareStatement(
-					"SELECT seller.*,department.Name as DepName " + "FROM seller INNER JOIN department "
-							+ "ON seller.DepartmentId = department.Id " + "WHERE DepartmentId = ? " + "ORDER BY Name");
+					"SELECT Name, Id FROM seller" + where(conditions) + " ORDER BY Name, Id LIMIT 1 OFFSET ?");
+			setParameters(st, params);
 
-			st.setInt(1, department.getId());
+			CancellationToken.register(st);
+			rs = st.executeQuery();
+			if (!rs.next()) {
+				return null;
+			}
+			Seller key = new Seller();
+			key.setName(rs.getString("Name"));
+			key.setId(rs.getInt("Id"));
+			return key;
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			CancellationToken.unregister();
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	@Override
+	public int count(SellerCriteria criteria) {
+		List<Object> params = new ArrayList<>();
+		List<String> conditions = criteriaConditions(criteria, params);
 
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT COUNT(*) FROM seller" + where(conditions));
+			setParameters(st, params);
+
+			CancellationToken.register(st);
 			rs = st.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		} catch (SQLException e) {
+			throw new DbException(e.getMessage());
+		} finally {
+			CancellationToken.unregister();
+			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	// every filter is a bind parameter, so each combination of filters is one cached statement
+	private List<String> criteriaConditions(SellerCriteria criteria, List<Object> params) {
+		List<String> conditions = new ArrayList<>();
+		if (criteria == null) {
+			return conditions;
+		}
+		if (criteria.getNamePrefix() != null) {
+			conditions.add("Name LIKE ?");
+			params.add(likePrefix(criteria.getNamePrefix()));
+		}
+		if (criteria.getEmailPrefix() != null) {
+			conditions.add("Email LIKE ?");
+			params.add(likePrefix(criteria.getEmailPrefix()));
+		}
+		if (criteria.getDepartmentId() != null) {
+			conditions.add("DepartmentId = ?");
+			params.add(criteria.getDepartmentId());
+		}
+		if (criteria.getMinBaseSalary() != null) {
+			conditions.add("BaseSalary >= ?");
+			params.add(criteria.getMinBaseSalary());
+		}
+		if (criteria.getMaxBaseSalary() != null) {
+			conditions.add("BaseSalary <= ?");
+			params.add(criteria.getMaxBaseSalary());
+		}
+		if (criteria.getBornFrom() != null) {
+			conditions.add("BirthDate >= ?");
+			params.add(criteria.getBornFrom());
+		}
+		if (criteria.getBornTo() != null) {
+			conditions.add("BirthDate <= ?");
+			params.add(criteria.getBornTo());
+		}
+		return conditions;
+	}
 
-			List<Seller> list = new ArrayList<>();
-			Map<Integer, Department> map = new HashMap<>();
+	private String where(List<String> conditions) {
+		return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+	}
 
-			while (rs.next()) {
+	private String likePrefix(String prefix) {
+		return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
 
-				Department dep = map.get(rs.getInt("DepartmentId"));
+	private void setParameters(PreparedStatement st, List<Object> params) throws SQLException {
+		for (int i = 0; i < params.size(); i++) {
+			Object param = params.get(i);
+			if (param instanceof Date) {
+				st.setDate(i + 1, new java.sql.Date(((Date) param).getTime()));
+			} else {
+				st.setObject(i + 1, param);
+			}
+		}
+	}
 
-				if (dep == null) {
-					dep = instantiateDepartment(rs);
-					map.put(rs.getInt("DepartmentId"), dep);
-				}
+	@Override
+	public long streamAll(Predicate<Seller> consumer) {
+		// rows reach the consumer while the connection is held, so a department created during the
+		// stream can't be loaded: its sellers carry a placeholder with only the id
+		Map<Integer, Department> map = departmentMap();
+
+		Connection conn = null;
+		PreparedStatement st = null;
+		ResultSet rs = null;
+		try {
+			conn = pool.getConnection();
+			st = conn.prepareStatement("SELECT * FROM seller ORDER BY Name", ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			st.setFetchSize(STREAM_FETCH_SIZE);
+
+			rs = st.executeQuery();
 
-				Seller obj = instantiateSeller(rs, dep);
-				list.add(obj);
+			long rows = 0;
+			while (rs.next()) {
+				Department dep = findDepartment(map, rs.getInt("DepartmentId"));
+				rows++;
+				if (!consumer.test(instantiateSeller(rs, dep))) {
+					stopStreaming(st, rs);
+					rs = null;
+					break;
+				}
 			}
-			return list;
+			return rows;
 		} catch (SQLException e) {
 			throw new DbException(e.getMessage());
 		} finally {
-			DB.closeStatement(st);
 			DB.closeResultSet(rs);
+			DB.closeStatement(st);
+			DB.closeConnection(conn);
+		}
+	}
+
+	// closing a streaming result set reads the rest of its rows, so the query is cancelled first;
+	// the close may then report the cancelled query, which is expected
+	private static void stopStreaming(Statement st, ResultSet rs) {
+		try {
+			st.cancel();
+		} catch (SQLException e) {
+			// the close below still reads what is left
+		}
+		try {
+			rs.close();
+		} catch (SQLException e) {
+			// cancelled on purpose
 		}
 	}
 }
@@ -0,0 +1,367 @@
+package model.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.function.Predicate;
+
+import db.DbConflictException;
+import db.DbException;
+import db.UnitOfWork;
+import model.dao.SellerCriteria;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * SellerDao over a MemoryDatabase. Queries in (Name, Id) order walk the name index, from the key
+ * of the previous page on for findPage, and the department index when they filter on a department.
+ * count and findKeyAt binary search the sorted copies of those indexes when the criteria filter on
+ * nothing but the department and a name prefix, and scan otherwise.
+ * The batch methods check the whole list before writing any of it, so they apply all or nothing
+ * instead of chunk by chunk.
+ */
+public class SellerDaoMemory implements SellerDao {
+
+	private MemoryDatabase db;
+
+	public SellerDaoMemory(MemoryDatabase db) {
+		this.db = db;
+	}
+
+	@Override
+	public Seller findById(Integer id) {
+		Seller row = db.getSeller(id);
+		return row == null ? null : copyOf(row);
+	}
+
+	@Override
+	public List<Seller> findByEmail(String email) {
+		List<Seller> list = new ArrayList<>();
+		for (Seller row : db.sellers()) {
+			if (row.getEmail().equalsIgnoreCase(email)) {
+				list.add(copyOf(row));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public List<Seller> findAll() {
+		return toTable(db.sellers());
+	}
+
+	@Override
+	public List<Seller> findByDepartment(Department department) {
+		return toTable(db.sellersOf(department.getId()));
+	}
+
+	@Override
+	public List<Seller> findByIds(Collection<Integer> ids) {
+		SellerTable table = new SellerTable(ids.size());
+		Map<Integer, Department> departments = new HashMap<>();
+		for (Integer id : ids) {
+			Seller row = db.getSeller(id);
+			if (row != null) {
+				add(table, row, departments);
+			}
+		}
+		table.trimToSize();
+		return table;
+	}
+
+	@Override
+	public List<Seller> findPage(SellerCriteria criteria, String afterName, Integer afterId, int pageSize) {
+		NavigableSet<Seller> index = index(criteria);
+		if (afterName != null) {
+			index = index.tailSet(key(afterName, afterId == null ? Integer.MAX_VALUE : afterId), false);
+		}
+		SellerTable table = new SellerTable(pageSize);
+		Map<Integer, Department> departments = new HashMap<>();
+		for (Seller row : index) {
+			if (table.size() == pageSize) {
+				break;
+			}
+			if (matches(row, criteria)) {
+				add(table, row, departments);
+			}
+		}
+		table.trimToSize();
+		return table;
+	}
+
+	@Override
+	public Seller findKeyAt(SellerCriteria criteria, int offset) {
+		if (isIndexed(criteria)) {
+			Seller[] sorted = sorted(criteria);
+			int[] range = range(sorted, criteria);
+			if (offset < 0 || offset >= range[1] - range[0]) {
+				return null;
+			}
+			Seller row = sorted[range[0] + offset];
+			return key(row.getName(), row.getId());
+		}
+		int position = 0;
+		for (Seller row : index(criteria)) {
+			if (matches(row, criteria) && position++ == offset) {
+				return key(row.getName(), row.getId());
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int count(SellerCriteria criteria) {
+		if (criteria == null || criteria.isEmpty()) {
+			return db.sellerCount();
+		}
+		if (isIndexed(criteria)) {
+			int[] range = range(sorted(criteria), criteria);
+			return range[1] - range[0];
+		}
+		int count = 0;
+		for (Seller row : index(criteria)) {
+			if (matches(row, criteria)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long streamAll(Predicate<Seller> consumer) {
+		long rows = 0;
+		for (Seller row : db.sellers()) {
+			rows++;
+			if (!consumer.test(copyOf(row))) {
+				break;
+			}
+		}
+		return rows;
+	}
+
+	@Override
+	public void insert(Seller obj) {
+		synchronized (db) {
+			checkRow(obj);
+			int id = db.nextSellerId();
+			db.putSeller(row(id, obj, 0));
+			obj.setId(id);
+			obj.setVersion(0);
+		}
+	}
+
+	@Override
+	public void update(Seller obj) {
+		synchronized (db) {
+			checkUpdate(obj);
+			db.putSeller(row(obj.getId(), obj, obj.getVersion() + 1));
+		}
+		advanceVersion(obj);
+	}
+
+	@Override
+	public void deleteById(Integer id) {
+		db.removeSeller(id);
+	}
+
+	@Override
+	public void insertAll(List<Seller> list) {
+		synchronized (db) {
+			for (Seller obj : list) {
+				checkRow(obj);
+			}
+			for (Seller obj : list) {
+				insert(obj);
+			}
+		}
+	}
+
+	@Override
+	public void updateAll(List<Seller> list) {
+		synchronized (db) {
+			for (Seller obj : list) {
+				checkUpdate(obj);
+			}
+			for (Seller obj : list) {
+				update(obj);
+			}
+		}
+	}
+
+	@Override
+	public void deleteAllById(List<Integer> ids) {
+		synchronized (db) {
+			for (Integer id : ids) {
+				db.removeSeller(id);
+			}
+		}
+	}
+
+	@Override
+	public int reassignDepartment(Integer fromDepartmentId, Integer toDepartmentId) {
+		synchronized (db) {
+			Department to = department(toDepartmentId);
+			Seller[] rows = db.sellersOf(fromDepartmentId).toArray(new Seller[0]);
+			for (Seller row : rows) {
+				Seller moved = MemoryDatabase.copyOf(row, to);
+				moved.setVersion(row.getVersion() + 1);
+				db.putSeller(moved);
+			}
+			return rows.length;
+		}
+	}
+
+	// the department index when the criteria names a department, the name index otherwise
+	private NavigableSet<Seller> index(SellerCriteria criteria) {
+		if (criteria != null && criteria.getDepartmentId() != null) {
+			return db.sellersOf(criteria.getDepartmentId());
+		}
+		return db.sellers();
+	}
+
+	private Seller[] sorted(SellerCriteria criteria) {
+		if (criteria != null && criteria.getDepartmentId() != null) {
+			return db.sortedSellersOf(criteria.getDepartmentId());
+		}
+		return db.sortedSellers();
+	}
+
+	// the filters the sorted arrays answer alone
+	private static boolean isIndexed(SellerCriteria criteria) {
+		return criteria == null || (criteria.getEmailPrefix() == null && criteria.getMinBaseSalary() == null
+				&& criteria.getMaxBaseSalary() == null && criteria.getBornFrom() == null
+				&& criteria.getBornTo() == null);
+	}
+
+	// [from, to) of the names starting with the criteria's prefix, which sort together
+	private static int[] range(Seller[] sorted, SellerCriteria criteria) {
+		String prefix = criteria == null ? null : criteria.getNamePrefix();
+		if (prefix == null) {
+			return new int[] { 0, sorted.length };
+		}
+		return new int[] { lowerBound(sorted, key(prefix, Integer.MIN_VALUE)),
+				lowerBound(sorted, key(prefix + Character.MAX_VALUE, Integer.MIN_VALUE)) };
+	}
+
+	// the first position not before the key; no row has the key's id, so there is never an exact match
+	private static int lowerBound(Seller[] sorted, Seller key) {
+		int i = Arrays.binarySearch(sorted, key, MemoryDatabase.SELLER_ORDER);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	private static Seller key(String name, Integer id) {
+		Seller key = new Seller();
+		key.setName(name);
+		key.setId(id);
+		return key;
+	}
+
+	// the same filters as the SQL of SellerDaoJDBC, prefixes compared case-insensitively like LIKE
+	private static boolean matches(Seller row, SellerCriteria criteria) {
+		if (criteria == null) {
+			return true;
+		}
+		if (criteria.getNamePrefix() != null && !startsWithIgnoreCase(row.getName(), criteria.getNamePrefix())) {
+			return false;
+		}
+		if (criteria.getEmailPrefix() != null && !startsWithIgnoreCase(row.getEmail(), criteria.getEmailPrefix())) {
+			return false;
+		}
+		if (criteria.getDepartmentId() != null && !criteria.getDepartmentId().equals(row.getDepartment().getId())) {
+			return false;
+		}
+		if (criteria.getMinBaseSalary() != null && row.getBaseSalary() < criteria.getMinBaseSalary()) {
+			return false;
+		}
+		if (criteria.getMaxBaseSalary() != null && row.getBaseSalary() > criteria.getMaxBaseSalary()) {
+			return false;
+		}
+		if (criteria.getBornFrom() != null && row.getBirthDate().before(criteria.getBornFrom())) {
+			return false;
+		}
+		if (criteria.getBornTo() != null && row.getBirthDate().after(criteria.getBornTo())) {
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean startsWithIgnoreCase(String value, String prefix) {
+		return value.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+
+	private SellerTable toTable(Collection<Seller> rows) {
+		SellerTable table = new SellerTable(rows.size());
+		Map<Integer, Department> departments = new HashMap<>();
+		for (Seller row : rows) {
+			add(table, row, departments);
+		}
+		table.trimToSize();
+		return table;
+	}
+
+	// the table copies the columns but keeps the department it is given, so it gets a copy, one per department
+	private static void add(SellerTable table, Seller row, Map<Integer, Department> departments) {
+		Department department = departments.computeIfAbsent(row.getDepartment().getId(),
+				id -> MemoryDatabase.copyOf(row.getDepartment()));
+		table.add(row.getId(), row.getName(), row.getEmail(), row.getBirthDate().getTime(), row.getBaseSalary(),
+				department, row.getVersion());
+	}
+
+	// neither the row nor its department may reach the caller
+	private static Seller copyOf(Seller row) {
+		return MemoryDatabase.copyOf(row, MemoryDatabase.copyOf(row.getDepartment()));
+	}
+
+	// a private copy for the tables, pointing at the stored department
+	private Seller row(Integer id, Seller obj, int version) {
+		Seller row = MemoryDatabase.copyOf(obj, department(obj.getDepartment().getId()));
+		row.setId(id);
+		row.setVersion(version);
+		return row;
+	}
+
+	// the seller table's foreign key
+	private Department department(Integer id) {
+		Department department = db.getDepartment(id);
+		if (department == null) {
+			throw new DbException("Department " + id + " does not exist");
+		}
+		return department;
+	}
+
+	// the seller table's NOT NULL columns and foreign key
+	private void checkRow(Seller obj) {
+		if (obj.getName() == null || obj.getEmail() == null || obj.getBirthDate() == null
+				|| obj.getBaseSalary() == null || obj.getDepartment() == null) {
+			throw new DbException("Seller " + obj.getId() + " is missing a required column");
+		}
+		department(obj.getDepartment().getId());
+	}
+
+	private void checkUpdate(Seller obj) {
+		checkRow(obj);
+		if (obj.getVersion() == null) {
+			throw new DbException("Seller " + obj.getId() + " has no version, it was not read from the database");
+		}
+		Seller row = db.getSeller(obj.getId());
+		if (row == null || !row.getVersion().equals(obj.getVersion())) {
+			throw new DbConflictException("Seller " + obj.getId() + " was changed or deleted by another user",
+					obj.getId());
+		}
+	}
+
+	// the new version only holds if the surrounding unit of work, if any, commits
+	private void advanceVersion(Seller obj) {
+		obj.setVersion(obj.getVersion() + 1);
+		UnitOfWork unit = UnitOfWork.currentDetached();
+		if (unit != null) {
+			unit.onRollback(() -> obj.setVersion(obj.getVersion() - 1));
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package model.dao.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A bounded map with W-TinyLFU eviction. New entries go through a small LRU window; when one
+ * falls out of it, it enters the main space only if a frequency sketch says it was used more
+ * often than the entry it would displace. The main space is a segmented LRU: entries used again
+ * move from probation to protected. One-off lookups, like a scan of every seller, pass through
+ * the window without pushing out the entries that are used all the time.
+ * Not thread safe; the owner synchronizes.
+ */
+class TinyLfuCache<K, V> {
+
+	private final int windowCapacity;
+	private final int protectedCapacity;
+	private final int mainCapacity;
+
+	// each segment is kept in LRU order, eldest first
+	private final LinkedHashMap<K, V> window = new LinkedHashMap<>();
+	private final LinkedHashMap<K, V> probation = new LinkedHashMap<>();
+	private final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<>();
+	private final FrequencySketch sketch;
+
+	private long evictions;
+
+	TinyLfuCache(int maximumSize) {
+		int capacity = Math.max(2, maximumSize);
+		windowCapacity = Math.max(1, capacity / 100);
+		mainCapacity = capacity - windowCapacity;
+		protectedCapacity = mainCapacity * 4 / 5;
+		sketch = new FrequencySketch(capacity);
+	}
+
+	V get(K key) {
+		sketch.increment(key);
+		V value = window.get(key);
+		if (value != null) {
+			touch(window, key, value);
+			return value;
+		}
+		value = probation.remove(key);
+		if (value != null) {
+			promote(key, value);
+			return value;
+		}
+		value = protectedSegment.get(key);
+		if (value != null) {
+			touch(protectedSegment, key, value);
+		}
+		return value;
+	}
+
+	void put(K key, V value) {
+		sketch.increment(key);
+		if (window.containsKey(key)) {
+			touch(window, key, value);
+		} else if (probation.containsKey(key)) {
+			probation.remove(key);
+			promote(key, value);
+		} else if (protectedSegment.containsKey(key)) {
+			touch(protectedSegment, key, value);
+		} else {
+			window.put(key, value);
+			if (window.size() > windowCapacity) {
+				admit(removeEldest(window));
+			}
+		}
+	}
+
+	V remove(K key) {
+		V value = window.remove(key);
+		if (value == null) {
+			value = probation.remove(key);
+		}
+		if (value == null) {
+			value = protectedSegment.remove(key);
+		}
+		return value;
+	}
+
+	void clear() {
+		window.clear();
+		probation.clear();
+		protectedSegment.clear();
+	}
+
+	int size() {
+		return window.size() + probation.size() + protectedSegment.size();
+	}
+
+	long getEvictions() {
+		return evictions;
+	}
+
+	// the entry pushed out of the window competes with the probation entry that would be evicted
+	private void admit(Map.Entry<K, V> candidate) {
+		if (probation.size() + protectedSegment.size() < mainCapacity) {
+			probation.put(candidate.getKey(), candidate.getValue());
+			return;
+		}
+		LinkedHashMap<K, V> victims = probation.isEmpty() ? protectedSegment : probation;
+		K victim = victims.keySet().iterator().next();
+		if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+			victims.remove(victim);
+			probation.put(candidate.getKey(), candidate.getValue());
+		}
+		evictions++;
+	}
+
+	private void promote(K key, V value) {
+		protectedSegment.put(key, value);
+		if (protectedSegment.size() > protectedCapacity) {
+			Map.Entry<K, V> demoted = removeEldest(protectedSegment);
+			probation.put(demoted.getKey(), demoted.getValue());
+		}
+	}
+
+	private static <K, V> void touch(LinkedHashMap<K, V> segment, K key, V value) {
+		segment.remove(key);
+		segment.put(key, value);
+	}
+
+	private static <K, V> Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> segment) {
+		Iterator<Map.Entry<K, V>> it = segment.entrySet().iterator();
+		Map.Entry<K, V> eldest = it.next();
+		Map.Entry<K, V> copy = Map.entry(eldest.getKey(), eldest.getValue());
+		it.remove();
+		return copy;
+	}
+
+	/*
+	 * Count-min sketch of 4-bit counters, four per key. Once the samples reach ten times the
+	 * cache size every counter is halved, so the counts follow what is popular now.
+	 */
+	private static class FrequencySketch {
+		private static final int DEPTH = 4;
+		private static final int[] SEEDS = { 0x97cb3127, 0xb7e15163, 0x2545f491, 0x9e3779b9 };
+
+		private final byte[][] counters;
+		private final int mask;
+		private final int sampleSize;
+		private int samples;
+
+		FrequencySketch(int capacity) {
+			int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+			counters = new byte[DEPTH][width];
+			mask = width - 1;
+			sampleSize = capacity * 10;
+		}
+
+		void increment(Object key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for (int i = 0; i < DEPTH; i++) {
+				int index = indexOf(hash, i);
+				if (counters[i][index] < 15) {
+					counters[i][index]++;
+					added = true;
+				}
+			}
+			if (added && ++samples >= sampleSize) {
+				reset();
+			}
+		}
+
+		int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < DEPTH; i++) {
+				frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private void reset() {
+			for (byte[] row : counters) {
+				for (int j = 0; j < row.length; j++) {
+					row[j] >>= 1;
+				}
+			}
+			samples /= 2;
+		}
+
+		private int indexOf(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * 0x9e3779b1;
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		private static int spread(int hash) {
+			hash ^= hash >>> 17;
+			hash *= 0xed5ad4bb;
+			return hash ^ (hash >>> 11);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package model.entities;
+
+// sellers whose age falls in [fromAge, toAge]
+public class AgeBand {
+
+	private final int fromAge;
+	private final int toAge;
+	private final int sellerCount;
+	private final double averageSalary;
+
+	public AgeBand(int fromAge, int toAge, int sellerCount, double averageSalary) {
+		this.fromAge = fromAge;
+		this.toAge = toAge;
+		this.sellerCount = sellerCount;
+		this.averageSalary = averageSalary;
+	}
+
+	public int getFromAge() {
+		return fromAge;
+	}
+
+	public int getToAge() {
+		return toAge;
+	}
+
+	public int getSellerCount() {
+		return sellerCount;
+	}
+
+	public double getAverageSalary() {
+		return averageSalary;
+	}
+
+	public String getLabel() {
+		return fromAge + "-" + toAge;
+	}
+}
@@ -14,6 +14,8 @@ public class Department implements Serializable {
 
 	private Integer id;
 	private String name;
+	// null until the department is saved
+	private Integer version;
 	
 	public Department() {
 	}
@@ -21,6 +23,8 @@ public class Department implements Serializable {
 	public Department(Integer id, String name) {
 		this.id = id;
 		this.name = name;
+		// the table columns show the property, not the field
+		setDepartmentName(name);
 	}
 
 	public Integer getId() {
@@ -40,6 +44,14 @@ public class Department implements Serializable {
 		setDepartmentName(name);
 	}
 
+	public Integer getVersion() {
+		return version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
 	public StringProperty departmentNameProperty() {
         return departmentName ;
     }
@@ -0,0 +1,53 @@
+package model.entities;
+
+// salary totals of one department, computed by the database
+public class DepartmentPayroll {
+
+	private final Integer departmentId;
+	private final String departmentName;
+	private final int sellerCount;
+	private final double totalSalary;
+	// null when the department has no sellers
+	private final Double averageSalary;
+	private final Double minSalary;
+	private final Double maxSalary;
+
+	public DepartmentPayroll(Integer departmentId, String departmentName, int sellerCount, double totalSalary,
+			Double averageSalary, Double minSalary, Double maxSalary) {
+		this.departmentId = departmentId;
+		this.departmentName = departmentName;
+		this.sellerCount = sellerCount;
+		this.totalSalary = totalSalary;
+		this.averageSalary = averageSalary;
+		this.minSalary = minSalary;
+		this.maxSalary = maxSalary;
+	}
+
+	public Integer getDepartmentId() {
+		return departmentId;
+	}
+
+	public String getDepartmentName() {
+		return departmentName;
+	}
+
+	public int getSellerCount() {
+		return sellerCount;
+	}
+
+	public double getTotalSalary() {
+		return totalSalary;
+	}
+
+	public Double getAverageSalary() {
+		return averageSalary;
+	}
+
+	public Double getMinSalary() {
+		return minSalary;
+	}
+
+	public Double getMaxSalary() {
+		return maxSalary;
+	}
+}
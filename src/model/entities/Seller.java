@@ -14,6 +14,8 @@ public class Seller implements Serializable {
 	private Double baseSalary;
 
 	private Department department;
+	// null until the seller is saved
+	private Integer version;
 
 	public Seller() {
 	}
@@ -76,11 +78,20 @@ public class Seller implements Serializable {
 		this.department = department;
 	}
 
+	public Integer getVersion() {
+		return version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
+	// getters rather than fields, so row views of a SellerTable compare equal to plain sellers
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((id == null) ? 0 : id.hashCode());
+		result = prime * result + ((getId() == null) ? 0 : getId().hashCode());
 		return result;
 	}
 
@@ -90,20 +101,20 @@ public class Seller implements Serializable {
 			return true;
 		if (obj == null)
 			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof Seller))
 			return false;
 		Seller other = (Seller) obj;
-		if (id == null) {
-			if (other.id != null)
+		if (getId() == null) {
+			if (other.getId() != null)
 				return false;
-		} else if (!id.equals(other.id))
+		} else if (!getId().equals(other.getId()))
 			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		return "Seller [id=" + id + ", name=" + name + ", email=" + email + ", birthDate=" + birthDate + ", baseSalary="
-				+ baseSalary + ", department=" + department + "]";
+		return "Seller [id=" + getId() + ", name=" + getName() + ", email=" + getEmail() + ", birthDate="
+				+ getBirthDate() + ", baseSalary=" + getBaseSalary() + ", department=" + getDepartment() + "]";
 	}
 }
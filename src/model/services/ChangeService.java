@@ -0,0 +1,221 @@
+package model.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import model.dao.ChangeLogDao;
+import model.dao.ChangeLogEntry;
+import model.dao.ChangeLogEntry.Operation;
+import model.dao.DaoFactory;
+import model.dao.DepartmentDao;
+import model.dao.SellerDao;
+import model.dao.impl.SellerCache;
+import model.entities.Department;
+import model.entities.Seller;
+
+/*
+ * Reads the change_log table filled by the database triggers and loads only the rows it names.
+ * Several entries for the same row collapse into one change: inserted then updated is an insert,
+ * inserted then deleted is dropped.
+ * Entries of the last recheckIds ids written in the last recheckMillis are read again on every call,
+ * since one committed late can sit below ids already read; the ones seen before are skipped.
+ * An instance keeps that state, so use one per reader.
+ */
+public class ChangeService {
+
+	public static class Change<T> {
+		private final Operation operation;
+		private final int id;
+		private final T entity;
+
+		Change(Operation operation, int id, T entity) {
+			this.operation = operation;
+			this.id = id;
+			this.entity = entity;
+		}
+
+		public Operation getOperation() {
+			return operation;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		// null for deletes
+		public T getEntity() {
+			return entity;
+		}
+	}
+
+	public static class Changes {
+		private final long lastId;
+		private final int entryCount;
+		private final boolean more;
+		private final List<Change<Seller>> sellers;
+		private final List<Change<Department>> departments;
+
+		Changes(long lastId, int entryCount, boolean more, List<Change<Seller>> sellers,
+				List<Change<Department>> departments) {
+			this.lastId = lastId;
+			this.entryCount = entryCount;
+			this.more = more;
+			this.sellers = sellers;
+			this.departments = departments;
+		}
+
+		// pass it to the next call
+		public long getLastId() {
+			return lastId;
+		}
+
+		// new change_log entries read, before collapsing
+		public int getEntryCount() {
+			return entryCount;
+		}
+
+		// the limit was reached, call again for the rest
+		public boolean hasMore() {
+			return more;
+		}
+
+		public List<Change<Seller>> getSellers() {
+			return sellers;
+		}
+
+		public List<Change<Department>> getDepartments() {
+			return departments;
+		}
+
+		public boolean isEmpty() {
+			return sellers.isEmpty() && departments.isEmpty();
+		}
+	}
+
+	private ChangeLogDao changeLogDao = DaoFactory.createChangeLogDao();
+	private SellerDao sellerDao = DaoFactory.createSellerDao();
+	private DepartmentDao departmentDao = DaoFactory.createDepartmentDao();
+
+	private final long recheckIds;
+	private final long recheckMillis;
+	// ids read since the recheck window's lower end, so entries read again are not reported twice
+	private final TreeSet<Long> recentIds = new TreeSet<>();
+	// entries up to this id were committed before the reader started
+	private long baselineId;
+
+	public ChangeService() {
+		this(10000, 60000);
+	}
+
+	public ChangeService(long recheckIds, long recheckMillis) {
+		this.recheckIds = Math.max(0, recheckIds);
+		this.recheckMillis = Math.max(0, recheckMillis);
+	}
+
+	// where a new reader starts
+	public long findLatestId() {
+		baselineId = changeLogDao.findLatestId();
+		recentIds.clear();
+		return baselineId;
+	}
+
+	public int purgeOlderThan(long retentionMillis) {
+		return changeLogDao.deleteOlderThan(retentionMillis);
+	}
+
+	public Changes findChangesAfter(long afterId, int limit) {
+		long recheckAfterId = Math.max(baselineId, afterId - recheckIds);
+		recentIds.headSet(recheckAfterId, true).clear();
+		// entries read again take room in the result
+		int queryLimit = limit + recentIds.size();
+		List<ChangeLogEntry> read = changeLogDao.findAfter(afterId, recheckAfterId, recheckMillis, queryLimit);
+
+		long lastId = afterId;
+		List<ChangeLogEntry> entries = new ArrayList<>();
+		for (ChangeLogEntry entry : read) {
+			lastId = Math.max(lastId, entry.getId());
+			if (recentIds.add(entry.getId())) {
+				entries.add(entry);
+			}
+		}
+
+		Map<Integer, Operation> sellerOps = collapse(entries, "seller");
+		Map<Integer, Operation> departmentOps = collapse(entries, "department");
+
+		// another client changed these departments, drop what this client has cached
+		for (Integer id : departmentOps.keySet()) {
+			DaoFactory.getDepartmentCache().invalidate(id);
+		}
+		List<Change<Department>> departments = new ArrayList<>();
+		for (Map.Entry<Integer, Operation> op : departmentOps.entrySet()) {
+			Department department = op.getValue() == Operation.DELETE ? null : departmentDao.findById(op.getKey());
+			departments.add(change(op.getKey(), op.getValue(), department));
+		}
+
+		List<Integer> sellerIds = new ArrayList<>();
+		for (Map.Entry<Integer, Operation> op : sellerOps.entrySet()) {
+			if (op.getValue() != Operation.DELETE) {
+				sellerIds.add(op.getKey());
+			}
+		}
+		Map<Integer, Seller> rows = new HashMap<>();
+		List<String> emails = new ArrayList<>();
+		if (!sellerIds.isEmpty()) {
+			for (Seller seller : sellerDao.findByIds(sellerIds)) {
+				rows.put(seller.getId(), seller);
+				emails.add(seller.getEmail());
+			}
+		}
+		// the new emails too, an inserted or updated seller joins their lookups
+		SellerCache sellerCache = DaoFactory.getSellerCache();
+		if (sellerCache != null && !sellerOps.isEmpty()) {
+			sellerCache.invalidate(sellerOps.keySet(), emails);
+		}
+		List<Change<Seller>> sellers = new ArrayList<>();
+		for (Map.Entry<Integer, Operation> op : sellerOps.entrySet()) {
+			sellers.add(change(op.getKey(), op.getValue(), rows.get(op.getKey())));
+		}
+
+		if (!sellers.isEmpty() || !departments.isEmpty()) {
+			ReportService.invalidate();
+		}
+		return new Changes(lastId, entries.size(), read.size() == queryLimit, sellers, departments);
+	}
+
+	// a row that is gone by the time it is read was deleted after the entries were read
+	private <T> Change<T> change(int id, Operation operation, T entity) {
+		if (operation != Operation.DELETE && entity == null) {
+			return new Change<>(Operation.DELETE, id, null);
+		}
+		return new Change<>(operation, id, entity);
+	}
+
+	private Map<Integer, Operation> collapse(List<ChangeLogEntry> entries, String tableName) {
+		Map<Integer, Operation> first = new LinkedHashMap<>();
+		Map<Integer, Operation> last = new HashMap<>();
+		for (ChangeLogEntry entry : entries) {
+			if (entry.getTableName().equalsIgnoreCase(tableName)) {
+				first.putIfAbsent(entry.getRowId(), entry.getOperation());
+				last.put(entry.getRowId(), entry.getOperation());
+			}
+		}
+
+		Map<Integer, Operation> result = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Operation> entry : first.entrySet()) {
+			Operation firstOp = entry.getValue();
+			Operation lastOp = last.get(entry.getKey());
+			if (lastOp == Operation.DELETE) {
+				if (firstOp != Operation.INSERT) {
+					result.put(entry.getKey(), Operation.DELETE);
+				}
+			} else {
+				result.put(entry.getKey(), firstOp == Operation.INSERT ? Operation.INSERT : Operation.UPDATE);
+			}
+		}
+		return result;
+	}
+}
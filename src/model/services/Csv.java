@@ -0,0 +1,61 @@
+package model.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 style fields: comma separated, optionally quoted, "" escapes a quote; a quoted field may hold line breaks
+class Csv {
+
+	// true when the text stops inside a quoted field, so the record goes on on the next line
+	static boolean endsInQuotes(String text) {
+		boolean quoted = false;
+		for (int i = 0; i < text.length(); i++) {
+			// "" inside quotes toggles twice, which leaves the state as it was
+			if (text.charAt(i) == '"') {
+				quoted = !quoted;
+			}
+		}
+		return quoted;
+	}
+
+	static List<String> parseLine(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	static String quote(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
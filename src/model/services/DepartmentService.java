@@ -1,14 +1,18 @@
 package model.services;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import db.UnitOfWork;
 import model.dao.DaoFactory;
 import model.dao.DepartmentDao;
+import model.dao.SellerDao;
 import model.entities.Department;
 
 public class DepartmentService {
 	
 	private DepartmentDao departmentDao = DaoFactory.createDepartmentDao();
+	private SellerDao sellerDao = DaoFactory.createSellerDao();
 	
 	public List<Department> findAll(){	
 		return departmentDao.findAll();		
@@ -23,9 +27,58 @@ public class DepartmentService {
 		{
 			departmentDao.update(department);
 		}
+		ReportService.invalidate();
 	}
 	
 	public void remove(Department department) {
 		departmentDao.deleteById(department.getId());
+		ReportService.invalidate();
+	}
+	
+	// moves the department's sellers to another one and deletes it, in one transaction
+	public int removeAndReassign(Department department, Department reassignTo) {
+		if (department.getId().equals(reassignTo.getId())) {
+			throw new IllegalArgumentException("Can't reassign sellers to the department being removed");
+		}
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			int moved = sellerDao.reassignDepartment(department.getId(), reassignTo.getId());
+			departmentDao.deleteById(department.getId());
+			unit.commit();
+			ReportService.invalidate();
+			return moved;
+		}
+	}
+	
+	public void saveOrUpdateAll(List<Department> departments) {
+		List<Department> inserts = new ArrayList<>();
+		List<Department> updates = new ArrayList<>();
+		for (Department department : departments) {
+			if (department.getId() == null) {
+				inserts.add(department);
+			}
+			else {
+				updates.add(department);
+			}
+		}
+		// one transaction and one commit for the whole list
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			unit.onRollback(() -> inserts.forEach(department -> department.setId(null)));
+			departmentDao.insertAll(inserts);
+			departmentDao.updateAll(updates);
+			unit.commit();
+		}
+		ReportService.invalidate();
+	}
+	
+	public void removeAll(List<Department> departments) {
+		List<Integer> ids = new ArrayList<>();
+		for (Department department : departments) {
+			ids.add(department.getId());
+		}
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			departmentDao.deleteAllById(ids);
+			unit.commit();
+		}
+		ReportService.invalidate();
 	}
 }	
@@ -0,0 +1,66 @@
+package model.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.dao.DaoFactory;
+import model.dao.ReportDao;
+import model.entities.AgeBand;
+import model.entities.DepartmentPayroll;
+
+/*
+ * Payroll figures aggregated by the database. Results are kept until a seller or
+ * department changes: the services that write them, and the change service for
+ * changes made by other clients, call invalidate().
+ */
+public class ReportService {
+
+	private static volatile List<DepartmentPayroll> payroll;
+	private static final Map<Integer, List<AgeBand>> ageBands = new ConcurrentHashMap<>();
+	// a result read while an invalidation happened is returned but not kept
+	private static final AtomicLong generation = new AtomicLong();
+
+	private ReportDao reportDao = DaoFactory.createReportDao();
+
+	public List<DepartmentPayroll> findPayrollByDepartment() {
+		List<DepartmentPayroll> result = payroll;
+		if (result == null) {
+			long readAt = generation.get();
+			result = Collections.unmodifiableList(reportDao.findPayrollByDepartment());
+			synchronized (ReportService.class) {
+				if (generation.get() == readAt) {
+					payroll = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	public List<AgeBand> findAgeBands(int bandYears) {
+		if (bandYears < 1) {
+			throw new IllegalArgumentException("Invalid age band: " + bandYears);
+		}
+		List<AgeBand> result = ageBands.get(bandYears);
+		if (result == null) {
+			long readAt = generation.get();
+			result = Collections.unmodifiableList(reportDao.findAgeBands(bandYears));
+			synchronized (ReportService.class) {
+				if (generation.get() == readAt) {
+					ageBands.put(bandYears, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	public static void invalidate() {
+		synchronized (ReportService.class) {
+			generation.incrementAndGet();
+			payroll = null;
+			ageBands.clear();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package model.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import db.DbException;
+import model.dao.DaoFactory;
+import model.dao.SellerDao;
+import model.entities.Seller;
+
+/*
+ * Writes every seller to a file while the rows are streamed from the database,
+ * so only the row being written is in memory. Blocking, run it off the FX thread.
+ * The CSV layout is the one SellerImportService reads.
+ */
+public class SellerExportService {
+
+	public enum Format {
+		CSV, JSON
+	}
+
+	public interface ExportListener {
+		void onProgress(long rowsWritten);
+
+		boolean isCancelled();
+	}
+
+	private static final int PROGRESS_INTERVAL = 10000;
+
+	private SellerDao sellerDao = DaoFactory.createSellerDao();
+
+	public long export(Path file, Format format, ExportListener listener) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1))) {
+
+			long[] written = { 0 };
+			if (format == Format.CSV) {
+				out.write("Name,Email,BirthDate,BaseSalary,Department\n");
+			} else {
+				out.write("[");
+			}
+
+			sellerDao.streamAll(seller -> {
+				if (listener.isCancelled()) {
+					return false;
+				}
+				try {
+					if (format == Format.CSV) {
+						writeCsv(out, seller);
+					} else {
+						writeJson(out, seller, written[0] == 0);
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				if (++written[0] % PROGRESS_INTERVAL == 0) {
+					listener.onProgress(written[0]);
+				}
+				return true;
+			});
+
+			if (format == Format.JSON) {
+				out.write(written[0] == 0 ? "]\n" : "\n]\n");
+			}
+			listener.onProgress(written[0]);
+			return written[0];
+		}
+		catch (IOException e) {
+			throw new DbException("Error writing " + file + ": " + e.getMessage());
+		}
+		catch (UncheckedIOException e) {
+			throw new DbException("Error writing " + file + ": " + e.getCause().getMessage());
+		}
+	}
+
+	private void writeCsv(Writer out, Seller seller) throws IOException {
+		out.write(Csv.quote(seller.getName()));
+		out.write(',');
+		out.write(Csv.quote(seller.getEmail()));
+		out.write(',');
+		out.write(formatDate(seller));
+		out.write(',');
+		out.write(String.valueOf(seller.getBaseSalary()));
+		out.write(',');
+		out.write(Csv.quote(seller.getDepartment().getName()));
+		out.write('\n');
+	}
+
+	private void writeJson(Writer out, Seller seller, boolean first) throws IOException {
+		out.write(first ? "\n" : ",\n");
+		out.write("{\"id\":");
+		out.write(String.valueOf(seller.getId()));
+		out.write(",\"name\":");
+		writeJsonString(out, seller.getName());
+		out.write(",\"email\":");
+		writeJsonString(out, seller.getEmail());
+		out.write(",\"birthDate\":\"");
+		out.write(formatDate(seller));
+		out.write("\",\"baseSalary\":");
+		out.write(String.valueOf(seller.getBaseSalary()));
+		out.write(",\"departmentId\":");
+		out.write(String.valueOf(seller.getDepartment().getId()));
+		out.write(",\"department\":");
+		writeJsonString(out, seller.getDepartment().getName());
+		out.write('}');
+	}
+
+	private void writeJsonString(Writer out, String value) throws IOException {
+		if (value == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+
+	private String formatDate(Seller seller) {
+		return LocalDate.ofInstant(seller.getBirthDate().toInstant(), ZoneId.systemDefault()).toString();
+	}
+}
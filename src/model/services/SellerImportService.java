@@ -0,0 +1,275 @@
+package model.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import db.DbException;
+import model.dao.DaoFactory;
+import model.dao.DepartmentDao;
+import model.dao.SellerDao;
+import model.entities.Department;
+import model.entities.Seller;
+import model.exceptions.ValidationException;
+
+/*
+ * Streams a CSV file of sellers into the database.
+ * Expected columns: Name,Email,BirthDate,BaseSalary,Department with BirthDate as yyyy-MM-dd
+ * and Department as the department name; a header line is skipped.
+ * Lines are read one at a time and valid rows are inserted in batches, so memory
+ * use does not depend on the size of the file. A batch the database rejects is inserted
+ * again row by row, so only the rows at fault are reported. Blocking, run it off the FX thread.
+ */
+public class SellerImportService {
+
+	private static final int COLUMNS = 5;
+	// how far a record with an open quote may run on after its first line
+	private static final int MAX_RECORD_CHARS = 8192;
+
+	public interface ImportListener {
+		void onProgress(Progress progress);
+
+		void onRowError(long lineNumber, String message);
+
+		boolean isCancelled();
+	}
+
+	public static class Progress {
+		private final long rowsRead;
+		private final long rowsImported;
+		private final long rowsFailed;
+		private final long elapsedMillis;
+
+		Progress(long rowsRead, long rowsImported, long rowsFailed, long elapsedMillis) {
+			this.rowsRead = rowsRead;
+			this.rowsImported = rowsImported;
+			this.rowsFailed = rowsFailed;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public long getRowsRead() {
+			return rowsRead;
+		}
+
+		public long getRowsImported() {
+			return rowsImported;
+		}
+
+		public long getRowsFailed() {
+			return rowsFailed;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public double getRowsPerSecond() {
+			return elapsedMillis == 0 ? 0 : rowsImported * 1000.0 / elapsedMillis;
+		}
+	}
+
+	private SellerDao sellerDao = DaoFactory.createSellerDao();
+	private DepartmentDao departmentDao = DaoFactory.createDepartmentDao();
+	// one DAO chunk per flush, so a failed flush is exactly one rolled back transaction
+	private int batchSize = DaoFactory.getBatchSize();
+
+	public Progress importCsv(Path file, ImportListener listener) {
+		Map<String, Department> departments = new HashMap<>();
+		for (Department dep : departmentDao.findAll()) {
+			// a department without a name can't be matched by one, rows for it fail as unknown
+			if (dep.getName() != null) {
+				departments.put(dep.getName().trim().toLowerCase(), dep);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		long rowsRead = 0;
+		long rowsImported = 0;
+		long rowsFailed = 0;
+
+		List<Seller> batch = new ArrayList<>(batchSize);
+		List<Long> batchLines = new ArrayList<>(batchSize);
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			String next;
+			long lineNumber = 0;
+			while ((line = reader.readLine()) != null && !listener.isCancelled()) {
+				long firstLine = ++lineNumber;
+				// a quoted value with line breaks, as the export writes them, continues the record; a stray
+				// quote would swallow the rest of the file, so the record may only go on for MAX_RECORD_CHARS
+				if (Csv.endsInQuotes(line)) {
+					reader.mark(MAX_RECORD_CHARS);
+					StringBuilder record = new StringBuilder(line);
+					long lastLine = lineNumber;
+					int read = 0;
+					boolean open = true;
+					while (open && read <= MAX_RECORD_CHARS && (next = reader.readLine()) != null) {
+						lastLine++;
+						read += next.length() + 2;
+						record.append('\n').append(next);
+						open = open != Csv.endsInQuotes(next);
+					}
+					if (open) {
+						rowsRead++;
+						rowsFailed++;
+						listener.onRowError(firstLine, "Unclosed quote, the record was skipped");
+						lineNumber = resync(reader, firstLine, lastLine);
+						continue;
+					}
+					line = record.toString();
+					lineNumber = lastLine;
+				}
+				if (line.trim().isEmpty() || (firstLine == 1 && isHeader(line))) {
+					continue;
+				}
+				rowsRead++;
+
+				try {
+					batch.add(parseSeller(Csv.parseLine(line), departments));
+					batchLines.add(firstLine);
+				}
+				catch (ValidationException e) {
+					rowsFailed++;
+					listener.onRowError(firstLine, describe(e));
+				}
+
+				if (batch.size() >= batchSize) {
+					int inserted = flush(batch, batchLines, listener);
+					rowsImported += inserted;
+					rowsFailed += batchLines.size() - inserted;
+					batch.clear();
+					batchLines.clear();
+					listener.onProgress(
+							new Progress(rowsRead, rowsImported, rowsFailed, System.currentTimeMillis() - start));
+				}
+			}
+
+			if (!batch.isEmpty() && !listener.isCancelled()) {
+				int inserted = flush(batch, batchLines, listener);
+				rowsImported += inserted;
+				rowsFailed += batchLines.size() - inserted;
+			}
+		}
+		catch (IOException e) {
+			throw new DbException("Error reading " + file + ": " + e.getMessage());
+		}
+		finally {
+			// chunks inserted before a failure or cancellation stay in the database
+			ReportService.invalidate();
+		}
+
+		Progress progress = new Progress(rowsRead, rowsImported, rowsFailed, System.currentTimeMillis() - start);
+		listener.onProgress(progress);
+		return progress;
+	}
+
+	// back to the line after the record's first, or past what was read if a very long line lost the mark
+	private static long resync(BufferedReader reader, long firstLine, long lastLine) {
+		try {
+			reader.reset();
+			return firstLine;
+		}
+		catch (IOException e) {
+			return lastLine;
+		}
+	}
+
+	private int flush(List<Seller> batch, List<Long> batchLines, ImportListener listener) {
+		try {
+			sellerDao.insertAll(batch);
+			return batch.size();
+		}
+		catch (DbException e) {
+			return insertOneByOne(batch, batchLines, listener);
+		}
+	}
+
+	// the chunk that failed was rolled back; sellers with an id were in chunks committed before it
+	private int insertOneByOne(List<Seller> batch, List<Long> batchLines, ImportListener listener) {
+		int inserted = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			Seller seller = batch.get(i);
+			if (seller.getId() == null) {
+				try {
+					sellerDao.insert(seller);
+				}
+				catch (DbException e) {
+					listener.onRowError(batchLines.get(i), e.getMessage());
+					continue;
+				}
+			}
+			inserted++;
+		}
+		return inserted;
+	}
+
+	private Seller parseSeller(List<String> fields, Map<String, Department> departments) {
+		if (fields.size() != COLUMNS) {
+			throw new ValidationException("Expected " + COLUMNS + " columns but found " + fields.size());
+		}
+
+		Seller seller = new Seller();
+		seller.setName(fields.get(0).trim());
+		seller.setEmail(fields.get(1).trim());
+
+		String birthDate = fields.get(2).trim();
+		if (!birthDate.isEmpty()) {
+			try {
+				LocalDate date = LocalDate.parse(birthDate);
+				seller.setBirthDate(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+			}
+			catch (DateTimeParseException e) {
+				throw new ValidationException("Invalid birth date: " + birthDate);
+			}
+		}
+
+		String baseSalary = fields.get(3).trim();
+		if (!baseSalary.isEmpty()) {
+			try {
+				seller.setBaseSalary(Double.parseDouble(baseSalary.replace(',', '.')));
+			}
+			catch (NumberFormatException e) {
+				throw new ValidationException("Invalid base salary: " + baseSalary);
+			}
+		}
+
+		SellerValidator.validate(seller);
+
+		Department department = departments.get(fields.get(4).trim().toLowerCase());
+		if (department == null) {
+			throw new ValidationException("Unknown department: " + fields.get(4).trim());
+		}
+		seller.setDepartment(department);
+
+		return seller;
+	}
+
+	private String describe(ValidationException e) {
+		if (e.getErrors().isEmpty()) {
+			return e.getMessage();
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> error : e.getErrors().entrySet()) {
+			if (sb.length() > 0) {
+				sb.append("; ");
+			}
+			sb.append(error.getKey()).append(": ").append(error.getValue());
+		}
+		return sb.toString();
+	}
+
+	private boolean isHeader(String line) {
+		return line.trim().toLowerCase().startsWith("name,");
+	}
+}
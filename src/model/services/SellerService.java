@@ -1,9 +1,19 @@
 package model.services;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
+import db.DbExecutor;
+import db.UnitOfWork;
 import model.dao.DaoFactory;
+import model.dao.SellerCriteria;
 import model.dao.SellerDao;
+import model.entities.Department;
 import model.entities.Seller;
 
 public class SellerService {
@@ -14,6 +24,45 @@ public class SellerService {
 		return sellerDao.findAll();		
 	}
 	
+	public Seller findById(Integer id) {
+		return sellerDao.findById(id);
+	}
+	
+	public List<Seller> findByEmail(String email) {
+		return sellerDao.findByEmail(email);
+	}
+	
+	// one query per department, run in parallel; the map follows the order of the departments given
+	public Map<Department, List<Seller>> findByDepartments(Collection<Department> departments) {
+		List<Department> distinct = new ArrayList<>(new LinkedHashSet<>(departments));
+		List<Callable<List<Seller>>> calls = new ArrayList<>();
+		for (Department department : distinct) {
+			calls.add(() -> sellerDao.findByDepartment(department));
+		}
+		List<List<Seller>> results = DbExecutor.invokeAll(calls);
+		Map<Department, List<Seller>> map = new LinkedHashMap<>();
+		for (int i = 0; i < distinct.size(); i++) {
+			map.put(distinct.get(i), results.get(i));
+		}
+		return map;
+	}
+	
+	public List<Seller> findPage(SellerCriteria criteria, Seller after, int pageSize) {
+		if (after == null) {
+			return sellerDao.findPage(criteria, null, null, pageSize);
+		}
+		return sellerDao.findPage(criteria, after.getName(), after.getId(), pageSize);
+	}
+	
+	// the (Name, Id) key of the row at the position, a starting point for findPage far into the list
+	public Seller findKeyAt(SellerCriteria criteria, int position) {
+		return sellerDao.findKeyAt(criteria, position);
+	}
+	
+	public int count(SellerCriteria criteria) {
+		return sellerDao.count(criteria);
+	}
+	
 	public void saveOrUpdate(Seller seller) {
 		if(seller.getId() == null) //new Seller
 		{
@@ -25,9 +74,63 @@ public class SellerService {
 		{
 			sellerDao.update(seller);
 		}
+		ReportService.invalidate();
 	}
 	
 	public void remove(Seller seller) {
 		sellerDao.deleteById(seller.getId());
+		ReportService.invalidate();
+	}
+	
+	public void saveOrUpdateAll(List<Seller> sellers) {
+		List<Seller> inserts = new ArrayList<>();
+		List<Seller> updates = new ArrayList<>();
+		for (Seller seller : sellers) {
+			if (seller.getId() == null) {
+				inserts.add(seller);
+			}
+			else {
+				updates.add(seller);
+			}
+		}
+		// one transaction and one commit for the whole list
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			unit.onRollback(() -> inserts.forEach(seller -> seller.setId(null)));
+			sellerDao.insertAll(inserts);
+			sellerDao.updateAll(updates);
+			unit.commit();
+		}
+		ReportService.invalidate();
+	}
+	
+	public void removeAll(List<Seller> sellers) {
+		List<Integer> ids = new ArrayList<>();
+		for (Seller seller : sellers) {
+			ids.add(seller.getId());
+		}
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			sellerDao.deleteAllById(ids);
+			unit.commit();
+		}
+		ReportService.invalidate();
+	}
+	
+	// all sellers move or none do
+	public void changeDepartment(List<Seller> sellers, Department department) {
+		List<Department> previous = new ArrayList<>();
+		for (Seller seller : sellers) {
+			previous.add(seller.getDepartment());
+			seller.setDepartment(department);
+		}
+		try (UnitOfWork unit = DaoFactory.beginUnitOfWork()) {
+			unit.onRollback(() -> {
+				for (int i = 0; i < sellers.size(); i++) {
+					sellers.get(i).setDepartment(previous.get(i));
+				}
+			});
+			sellerDao.updateAll(sellers);
+			unit.commit();
+		}
+		ReportService.invalidate();
 	}
 }	
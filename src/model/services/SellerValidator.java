@@ -0,0 +1,32 @@
+package model.services;
+
+import model.entities.Seller;
+import model.exceptions.ValidationException;
+
+public class SellerValidator {
+
+	// the rules of the seller form, shared with anything else that creates sellers
+	public static void validate(Seller seller) {
+		ValidationException exception = new ValidationException("Validation Error");
+
+		if (seller.getName() == null || seller.getName().trim().isEmpty()) {
+			exception.addError("name", "Field can't be empty");
+		}
+
+		if (seller.getEmail() == null || seller.getEmail().trim().isEmpty()) {
+			exception.addError("email", "Field can't be empty");
+		}
+
+		if (seller.getBirthDate() == null) {
+			exception.addError("birthDate", "Field can't be empty");
+		}
+
+		if (seller.getBaseSalary() == null) {
+			exception.addError("baseSalary", "Field can't be empty");
+		}
+
+		if (exception.getErrors().size() > 0) {
+			throw exception;
+		}
+	}
+}
@@ -0,0 +1,450 @@
+package model.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import db.DB;
+import db.DbConflictException;
+import db.DbException;
+import model.entities.Seller;
+
+/*
+ * Write-behind for seller saves, on when dao.writeBehind.enabled is true. submit() returns as soon as
+ * the seller is queued and a background writer saves the queue in batches of dao.writeBehind.batchSize,
+ * one transaction each, waiting up to dao.writeBehind.lingerMillis for a batch to fill.
+ *
+ * Saves of the same seller that are still queued collapse into the latest one. The queue holds at most
+ * dao.writeBehind.capacity sellers; when it is full submit() waits up to dao.writeBehind.offerTimeoutMillis
+ * and then fails, so a producer faster than the database is slowed down instead of piling up memory.
+ * offer() fails right away instead, for callers on the FX thread.
+ * A failed batch is retried dao.writeBehind.maxRetries times with growing delays, then seller by seller,
+ * so one bad row does not sink the others; a version conflict is not retried. Sellers that can't be saved
+ * are appended to dao.writeBehind.failureFile and reported to the listeners. Each line holds the failure's
+ * time and reason, the seller's Id and Version, then the five columns SellerImportService reads.
+ */
+public class SellerWriteQueue {
+
+	private static final Logger LOG = Logger.getLogger(SellerWriteQueue.class.getName());
+
+	public interface Listener {
+		// on the writer thread; the seller has its id and new version
+		void onSaved(Seller seller, boolean inserted);
+
+		// on the writer thread; the seller is in the failure file
+		void onFailed(Seller seller, String message);
+	}
+
+	private static SellerWriteQueue instance = null;
+	private static boolean configured = false;
+
+	// created by the writer, so get() never waits for the connection pool
+	private SellerService service;
+	private final int capacity;
+	private final int batchSize;
+	private final long lingerMillis;
+	private final long offerTimeoutMillis;
+	private final int maxRetries;
+	private final long retryDelayMillis;
+	private final Path failureFile;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition idle = lock.newCondition();
+	// keyed by seller id, or by a key of their own for new sellers, in the order they were first queued
+	private final LinkedHashMap<Object, Seller> pending = new LinkedHashMap<>();
+	// id -> version of the saves being written, new sellers only count in writingCount
+	private final Map<Integer, Integer> writing = new HashMap<>();
+	private int writingCount;
+	private int flushWaiters;
+	private boolean closed;
+	private final Thread writer;
+
+	// null unless dao.writeBehind.enabled is true
+	public static synchronized SellerWriteQueue get() {
+		if (!configured) {
+			configured = true;
+			Properties props = DB.loadProperties();
+			if (Boolean.parseBoolean(props.getProperty("dao.writeBehind.enabled", "false"))) {
+				instance = new SellerWriteQueue(props);
+			}
+		}
+		return instance;
+	}
+
+	// flushes what is queued, waiting up to dao.writeBehind.shutdownTimeoutMillis; the queue is not reopened
+	public static synchronized void shutdown() {
+		configured = true;
+		if (instance != null) {
+			instance.close(DB.longProperty(DB.loadProperties(), "dao.writeBehind.shutdownTimeoutMillis", 30000));
+			instance = null;
+		}
+	}
+
+	SellerWriteQueue(Properties props) {
+		capacity = Math.max(1, DB.intProperty(props, "dao.writeBehind.capacity", 1000));
+		batchSize = Math.max(1, DB.intProperty(props, "dao.writeBehind.batchSize", 100));
+		lingerMillis = Math.max(0, DB.longProperty(props, "dao.writeBehind.lingerMillis", 200));
+		offerTimeoutMillis = Math.max(0, DB.longProperty(props, "dao.writeBehind.offerTimeoutMillis", 2000));
+		maxRetries = Math.max(0, DB.intProperty(props, "dao.writeBehind.maxRetries", 3));
+		retryDelayMillis = Math.max(0, DB.longProperty(props, "dao.writeBehind.retryDelayMillis", 1000));
+		failureFile = Paths.get(props.getProperty("dao.writeBehind.failureFile", "seller-save-failures.csv"));
+
+		writer = new Thread(this::run, "seller-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	// queues a copy of the seller; waits while the queue is full and fails if it stays full or is closed
+	public void submit(Seller seller) {
+		enqueue(seller, offerTimeoutMillis);
+	}
+
+	// like submit() but fails at once when the queue is full, so the FX thread never waits on the writer
+	public void offer(Seller seller) {
+		enqueue(seller, 0);
+	}
+
+	private void enqueue(Seller seller, long timeoutMillis) {
+		Seller copy = copyOf(seller);
+		Object key = copy.getId() == null ? new Object() : copy.getId();
+		lock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while (!closed && !pending.containsKey(key) && pending.size() >= capacity) {
+				if (nanos <= 0) {
+					throw new DbException("Too many unsaved sellers, try again in a moment");
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			if (closed) {
+				throw new DbException("Seller saves are closed");
+			}
+			// replacing keeps the seller's place in the queue
+			pending.put(key, copy);
+			notEmpty.signal();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting to save seller " + seller.getId());
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// sellers queued or being written
+	public int size() {
+		lock.lock();
+		try {
+			return pending.size() + writingCount;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	// waits until everything queued so far is saved or reported, returns false on timeout
+	public boolean flush(long timeoutMillis) {
+		lock.lock();
+		try {
+			flushWaiters++;
+			notEmpty.signal();
+			long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while (!pending.isEmpty() || writingCount > 0) {
+				if (nanos <= 0 || !writer.isAlive()) {
+					return false;
+				}
+				nanos = idle.awaitNanos(nanos);
+			}
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally {
+			flushWaiters--;
+			lock.unlock();
+		}
+	}
+
+	void close(long timeoutMillis) {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signal();
+			notFull.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+		try {
+			writer.join(timeoutMillis);
+			if (writer.isAlive()) {
+				// stops the writer between attempts, it reports the batch it holds
+				writer.interrupt();
+				writer.join(1000);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Seller> left;
+		lock.lock();
+		try {
+			left = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+		finally {
+			lock.unlock();
+		}
+		for (Seller seller : left) {
+			fail(seller, "Not saved before the application closed");
+		}
+	}
+
+	private void run() {
+		service = new SellerService();
+		while (true) {
+			List<Seller> batch = nextBatch();
+			if (batch == null) {
+				return;
+			}
+			try {
+				write(batch);
+			}
+			finally {
+				lock.lock();
+				try {
+					writing.clear();
+					writingCount = 0;
+					if (pending.isEmpty()) {
+						idle.signalAll();
+					}
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	// null once the queue is closed and empty, or the writer is interrupted
+	private List<Seller> nextBatch() {
+		lock.lock();
+		try {
+			while (pending.isEmpty()) {
+				if (closed) {
+					return null;
+				}
+				notEmpty.await();
+			}
+			// saves made close together share a transaction, unless someone is waiting for them
+			long nanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+			while (pending.size() < batchSize && !closed && flushWaiters == 0 && nanos > 0) {
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			List<Seller> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+			Iterator<Seller> it = pending.values().iterator();
+			while (it.hasNext() && batch.size() < batchSize) {
+				Seller seller = it.next();
+				it.remove();
+				batch.add(seller);
+				if (seller.getId() != null) {
+					writing.put(seller.getId(), seller.getVersion());
+				}
+			}
+			writingCount = batch.size();
+			notFull.signalAll();
+			return batch;
+		}
+		catch (InterruptedException e) {
+			return null;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void write(List<Seller> batch) {
+		List<Seller> remaining = new ArrayList<>(batch);
+		List<Boolean> inserted = new ArrayList<>();
+		int attempt = 0;
+		while (!remaining.isEmpty()) {
+			inserted.clear();
+			for (Seller seller : remaining) {
+				inserted.add(seller.getId() == null);
+			}
+			try {
+				service.saveOrUpdateAll(remaining);
+				for (int i = 0; i < remaining.size(); i++) {
+					saved(remaining.get(i), inserted.get(i));
+				}
+				return;
+			}
+			catch (DbConflictException e) {
+				// retrying can't help the seller that conflicted, the rest go again
+				Seller conflicted = find(remaining, e.getId());
+				if (conflicted == null) {
+					writeOneByOne(remaining);
+					return;
+				}
+				remaining.remove(conflicted);
+				fail(conflicted, e.getMessage());
+			}
+			catch (RuntimeException e) {
+				if (attempt >= maxRetries) {
+					writeOneByOne(remaining);
+					return;
+				}
+				attempt++;
+				LOG.log(Level.WARNING, "Saving " + remaining.size() + " sellers failed, attempt " + attempt + " of "
+						+ (maxRetries + 1) + ": " + e.getMessage());
+				try {
+					Thread.sleep(retryDelayMillis << Math.min(attempt - 1, 10));
+				}
+				catch (InterruptedException ie) {
+					for (Seller seller : remaining) {
+						fail(seller, "Not saved before the application closed: " + e.getMessage());
+					}
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	// the last resort for a batch that keeps failing, so only the sellers at fault are lost
+	private void writeOneByOne(List<Seller> sellers) {
+		for (Seller seller : sellers) {
+			boolean inserted = seller.getId() == null;
+			try {
+				service.saveOrUpdateAll(Collections.singletonList(seller));
+				saved(seller, inserted);
+			}
+			catch (RuntimeException e) {
+				fail(seller, e.getMessage());
+			}
+		}
+	}
+
+	private void saved(Seller seller, boolean inserted) {
+		if (!inserted) {
+			lock.lock();
+			try {
+				// a save of the same seller queued meanwhile was made on top of this one, not of what is now stored
+				Seller next = pending.get(seller.getId());
+				Integer from = writing.get(seller.getId());
+				if (next != null && from != null && from.equals(next.getVersion())) {
+					next.setVersion(seller.getVersion());
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		for (Listener listener : listeners) {
+			listener.onSaved(copyOf(seller), inserted);
+		}
+	}
+
+	private void fail(Seller seller, String message) {
+		LOG.log(Level.WARNING, "Seller " + (seller.getId() == null ? seller.getName() : seller.getId())
+				+ " was not saved: " + message);
+		try {
+			appendFailure(seller, message);
+		}
+		catch (IOException e) {
+			LOG.log(Level.SEVERE, "Error writing " + failureFile + ", lost " + seller + ": " + e.getMessage());
+		}
+		for (Listener listener : listeners) {
+			listener.onFailed(copyOf(seller), message);
+		}
+	}
+
+	// forced to disk before the failure is reported
+	private synchronized void appendFailure(Seller seller, String message) throws IOException {
+		try (FileChannel channel = FileChannel.open(failureFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+				Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1))) {
+			if (channel.size() == 0) {
+				out.write("FailedAt,Error,Id,Version,Name,Email,BirthDate,BaseSalary,Department\n");
+			}
+			out.write(Instant.now().toString());
+			out.write(',');
+			out.write(Csv.quote(message));
+			out.write(',');
+			out.write(seller.getId() == null ? "" : String.valueOf(seller.getId()));
+			out.write(',');
+			out.write(seller.getVersion() == null ? "" : String.valueOf(seller.getVersion()));
+			out.write(',');
+			out.write(Csv.quote(seller.getName()));
+			out.write(',');
+			out.write(Csv.quote(seller.getEmail()));
+			out.write(',');
+			out.write(seller.getBirthDate() == null ? ""
+					: LocalDate.ofInstant(seller.getBirthDate().toInstant(), ZoneId.systemDefault()).toString());
+			out.write(',');
+			out.write(seller.getBaseSalary() == null ? "" : String.valueOf(seller.getBaseSalary()));
+			out.write(',');
+			out.write(seller.getDepartment() == null ? "" : Csv.quote(seller.getDepartment().getName()));
+			out.write('\n');
+			out.flush();
+			channel.force(false);
+		}
+	}
+
+	private static Seller find(List<Seller> sellers, Integer id) {
+		for (Seller seller : sellers) {
+			if (seller.getId() != null && seller.getId().equals(id)) {
+				return seller;
+			}
+		}
+		return null;
+	}
+
+	private static Seller copyOf(Seller seller) {
+		Seller copy = new Seller(seller.getId(), seller.getName(), seller.getEmail(),
+				seller.getBirthDate() == null ? null : new Date(seller.getBirthDate().getTime()),
+				seller.getBaseSalary(), seller.getDepartment());
+		copy.setVersion(seller.getVersion());
+		return copy;
+	}
+}